@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.partitioning;
+
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.HashMapEdges;
+import org.apache.giraph.graph.DefaultVertex;
+import org.apache.giraph.graph.Vertex;
+import org.apache.hadoop.io.LongWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import unipg.gila.common.datastructures.EdgeValue;
+import unipg.gila.common.datastructures.PartitioningVertexValue;
+import unipg.gila.common.datastructures.messagetypes.PartitionMessage;
+
+/**
+ * This benchmark measures the per-vertex cost of the Spinner label-propagation step (ComputeNewPartition) before and after the
+ * allocation-free rewrite. The "legacy" methods are copies of the previous code: a BigDecimal penalty for each candidate partition
+ * and a new LongWritable and EdgeValue for each neighbour update. The "current" methods follow ComputeNewPartition as it is now:
+ * cached fixed-point penalties (Spinner.thousandthsCeiling) refreshed on migration, and in-place edge value updates.
+ *
+ * Both scoring paths draw the ties from the same seeded Random; the setup checks that they choose the same partitions.
+ *
+ * @author Alessio Arleo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpinnerStepBenchmark {
+
+	static final int VERTICES = 10000;
+	static final int DEGREE = 16;
+	static final long SEED = 42;
+
+	@Param({"8", "32"})
+	int partitions;
+
+	//SYNTHETIC NEIGHBOURHOODS: THE PARTITION OF EACH NEIGHBOUR AND THE CURRENT PARTITION OF EACH VERTEX
+	short[][] neighbourPartitions;
+	short[] currentPartitions;
+	long[] initialLoads;
+	long totalCapacity;
+
+	//A REAL GIRAPH VERTEX AND THE MIGRATION MESSAGES OF ITS NEIGHBOURS
+	Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex;
+	List<PartitionMessage> messages;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(SEED);
+		neighbourPartitions = new short[VERTICES][DEGREE];
+		currentPartitions = new short[VERTICES];
+		initialLoads = new long[partitions];
+		for (int v = 0; v < VERTICES; v++) {
+			currentPartitions[v] = (short) random.nextInt(partitions);
+			initialLoads[currentPartitions[v]] += DEGREE;
+			for (int e = 0; e < DEGREE; e++) {
+				neighbourPartitions[v][e] = (short) random.nextInt(partitions);
+			}
+		}
+		totalCapacity = Math.round(((double) VERTICES * DEGREE) * 1.05 / partitions);
+
+		vertex = new DefaultVertex<LongWritable, PartitioningVertexValue, EdgeValue>();
+		HashMapEdges<LongWritable, EdgeValue> edges = new HashMapEdges<LongWritable, EdgeValue>();
+		edges.initialize(DEGREE);
+		messages = new ArrayList<PartitionMessage>(DEGREE);
+		for (int e = 0; e < DEGREE; e++) {
+			edges.add(EdgeFactory.create(new LongWritable(e), new EdgeValue((short) 0, (byte) 1)));
+			messages.add(new PartitionMessage(e, (short) random.nextInt(partitions)));
+		}
+		vertex.initialize(new LongWritable(-1), new PartitioningVertexValue(), edges);
+
+		if (!Arrays.equals(new LabelPropagation(true).run(), new LabelPropagation(false).run())) {
+			throw new IllegalStateException("The legacy and the current scoring chose different partitions.");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES)
+	public short[] scoringLegacy() {
+		return new LabelPropagation(true).run();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES)
+	public short[] scoringCurrent() {
+		return new LabelPropagation(false).run();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DEGREE)
+	public Vertex<LongWritable, PartitioningVertexValue, EdgeValue> neighbourUpdateLegacy() {
+		for (PartitionMessage message : messages) {
+			LongWritable otherId = new LongWritable(message.getPayloadVertex());
+			EdgeValue oldValue = vertex.getEdgeValue(otherId);
+			vertex.setEdgeValue(otherId, new EdgeValue(message.getValue(), oldValue.getWeight()));
+		}
+		return vertex;
+	}
+
+	private final LongWritable otherId = new LongWritable();
+
+	@Benchmark
+	@OperationsPerInvocation(DEGREE)
+	public Vertex<LongWritable, PartitioningVertexValue, EdgeValue> neighbourUpdateCurrent() {
+		for (PartitionMessage message : messages) {
+			otherId.set(message.getPayloadVertex());
+			EdgeValue value = vertex.getEdgeValue(otherId);
+			value.setPartition(message.getValue());
+			vertex.setEdgeValue(otherId, value);
+		}
+		return vertex;
+	}
+
+	/**
+	 * One label-propagation pass over the synthetic vertices, with the scoring and the migration requests of ComputeNewPartition.
+	 */
+	class LabelPropagation {
+
+		private final boolean legacy;
+		private final long[] loads = Arrays.copyOf(initialLoads, partitions);
+		private final double[] penalties = new double[partitions];
+		private final int[] partitionFrequency = new int[partitions];
+		private final ShortArrayList maxIndices = new ShortArrayList();
+		private final Random rnd = new Random(SEED);
+		private final double lambda = 1;
+
+		LabelPropagation(boolean legacy) {
+			this.legacy = legacy;
+			for (int i = 0; i < partitions; i++) {
+				updatePenalty(i);
+			}
+		}
+
+		private double computeWLegacy(int newPartition) {
+			return new BigDecimal(((double) loads[newPartition])
+					/ totalCapacity).setScale(3, BigDecimal.ROUND_CEILING)
+					.doubleValue();
+		}
+
+		private double computeW(int newPartition) {
+			return ((double) Spinner.thousandthsCeiling(((double) loads[newPartition])
+					/ totalCapacity)) / 1000;
+		}
+
+		private void updatePenalty(int partition) {
+			if (!legacy) {
+				penalties[partition] = lambda * computeW(partition);
+			}
+		}
+
+		short[] run() {
+			short[] chosen = new short[VERTICES];
+			for (int v = 0; v < VERTICES; v++) {
+				Arrays.fill(partitionFrequency, 0);
+				for (short partition : neighbourPartitions[v]) {
+					partitionFrequency[partition]++;
+				}
+				short currentPartition = currentPartitions[v];
+				double bestState = -Double.MAX_VALUE;
+				maxIndices.clear();
+				for (short i = 0; i < partitions; i++) {
+					double LPA = ((double) partitionFrequency[i]) / DEGREE;
+					double PF = legacy ? lambda * computeWLegacy(i) : penalties[i];
+					double H = lambda + LPA - PF;
+					if (H > bestState) {
+						bestState = H;
+						maxIndices.clear();
+						maxIndices.add(i);
+					} else if (H == bestState) {
+						maxIndices.add(i);
+					}
+				}
+				short newPartition;
+				if (maxIndices.size() == 1) {
+					newPartition = maxIndices.getShort(0);
+				} else if (maxIndices.contains(currentPartition)) {
+					newPartition = currentPartition;
+				} else {
+					newPartition = maxIndices.getShort(rnd.nextInt(maxIndices.size()));
+				}
+				if (newPartition != currentPartition) {
+					loads[newPartition] += DEGREE;
+					loads[currentPartition] -= DEGREE;
+					updatePenalty(newPartition);
+					updatePenalty(currentPartition);
+				}
+				chosen[v] = newPartition;
+			}
+			return chosen;
+		}
+	}
+}
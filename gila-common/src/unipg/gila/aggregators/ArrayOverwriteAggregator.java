@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.aggregators;
+
+import org.apache.giraph.aggregators.Aggregator;
+import org.apache.hadoop.io.Writable;
+
+import unipg.gila.common.datastructures.FloatWritableArray;
+import unipg.gila.common.datastructures.LongWritableArray;
+
+/**
+ * This aggregator stores the last array it receives; it is used by the master to broadcast dense per-component tables, i.e. flat
+ * arrays in which the values of the component with index i are stored from position i*stride. The initial value is an empty array;
+ * empty arrays are not aggregated, so that the partial values of the workers do not wipe the table when they are merged into a
+ * persistent aggregator.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public abstract class ArrayOverwriteAggregator<A extends Writable> implements Aggregator<A> {
+
+	protected A internalState;
+
+	public void aggregate(A in) {
+		if(!isEmpty(in))
+			internalState = in;
+	}
+
+	protected abstract boolean isEmpty(A in);
+
+	public A getAggregatedValue() {
+		return internalState;
+	}
+
+	public void reset() {
+		internalState = createInitialValue();
+	}
+
+	public void setAggregatedValue(A in) {
+		internalState = in;
+	}
+
+	/**
+	 * The overwrite aggregator for float arrays (FloatWritableArray).
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class FloatArrayOverwriteAggregator extends ArrayOverwriteAggregator<FloatWritableArray>{
+
+		public FloatWritableArray createInitialValue() {
+			return new FloatWritableArray(new float[0]);
+		}
+
+		protected boolean isEmpty(FloatWritableArray in) {
+			return in.get().length == 0;
+		}
+	}
+
+	/**
+	 * The overwrite aggregator for long arrays (LongWritableArray).
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class LongArrayOverwriteAggregator extends ArrayOverwriteAggregator<LongWritableArray>{
+
+		public LongWritableArray createInitialValue() {
+			return new LongWritableArray(new long[0]);
+		}
+
+		protected boolean isEmpty(LongWritableArray in) {
+			return in.get().length == 0;
+		}
+	}
+
+}
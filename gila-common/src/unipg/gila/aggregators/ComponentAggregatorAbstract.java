@@ -24,6 +24,9 @@ import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.io.Writable;
 
 import unipg.gila.common.datastructures.FloatWritableArray;
+import unipg.gila.common.datastructures.LongWritableArray;
+import unipg.gila.common.datastructures.LongWritableSet;
+import unipg.gila.common.datastructures.PartitionSummaryWritable;
 
 /**
  * This aggregator is used to store different kinds of information in a map. This aggregator should be used with caution, given that a map is an
@@ -41,7 +44,7 @@ public abstract class ComponentAggregatorAbstract implements Aggregator<MapWrita
 		while(allEntries.hasNext()){
 			Entry<Writable, Writable> current = allEntries.next();
 			if(!internalState.containsKey(current.getKey()))
-				internalState.put(current.getKey(), current.getValue());
+				internalState.put(current.getKey(), own(current.getValue()));
 			else{
 				specificAggregate(current);
 			}
@@ -64,6 +67,17 @@ public abstract class ComponentAggregatorAbstract implements Aggregator<MapWrita
 		internalState = in;
 	}
 
+	/**
+	 * Returns the value to store for a key which is not in the map yet. The aggregators which merge the values in place override
+	 * it to store a private copy, so that the aggregated objects are never modified.
+	 * 
+	 * @param value The aggregated value.
+	 * @return The value to store.
+	 */
+	protected Writable own(Writable value){
+		return value;
+	}
+
 	/**
 	 * This method must be overridden in order to subclass <i>ComponentAggregatorAbstract</i>. The method is used to decide
 	 * whether to insert the current java.util.map.Entry<Writable, Writable> in the map or not. Note that if the key is already present the entry will be
@@ -106,46 +120,122 @@ public abstract class ComponentAggregatorAbstract implements Aggregator<MapWrita
 	}
 	
 	/**
-	 * This aggregator sums up integer values with the same key.
+	 * This aggregator sums up integer values with the same key, in place.
 	 * 
 	 * @author Alessio Arleo
 	 *
 	 */
 	public static class ComponentIntSumAggregator extends ComponentAggregatorAbstract{
 
+		@Override
+		protected Writable own(Writable value) {
+			return new IntWritable(((IntWritable)value).get());
+		}
+
 		@Override
 		protected void specificAggregate(Entry<Writable, Writable> current) {
-			Integer newValue = ((IntWritable)current.getValue()).get();
-			Integer currentValue = ((IntWritable)internalState.get(current.getKey())).get();
-			internalState.put(current.getKey(), new IntWritable(newValue+currentValue));
+			IntWritable currentValue = (IntWritable)internalState.get(current.getKey());
+			currentValue.set(currentValue.get() + ((IntWritable)current.getValue()).get());
 		}
 	}
 	
 	/**
-	 * This aggregator keeps the maximum float coordinates (float[]{x,y}) for each key.
+	 * This aggregator sums up float arrays (FloatWritableArray) of the same length with the same key, element by element.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class ComponentFloatArraySumAggregator extends ComponentAggregatorAbstract{
+
+		@Override
+		protected void specificAggregate(Entry<Writable, Writable> current) {
+			float[] newValue = ((FloatWritableArray)current.getValue()).get();
+			float[] currentValue = ((FloatWritableArray)internalState.get(current.getKey())).get();
+			float[] sum = new float[currentValue.length];
+			for(int i=0; i<sum.length; i++)
+				sum[i] = currentValue[i] + newValue[i];
+			internalState.put(current.getKey(), new FloatWritableArray(sum));
+		}
+	}
+
+	/**
+	 * This aggregator sums up long arrays (LongWritableArray) of the same length with the same key, element by element.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class ComponentLongArraySumAggregator extends ComponentAggregatorAbstract{
+
+		@Override
+		protected void specificAggregate(Entry<Writable, Writable> current) {
+			long[] newValue = ((LongWritableArray)current.getValue()).get();
+			long[] currentValue = ((LongWritableArray)internalState.get(current.getKey())).get();
+			long[] sum = new long[currentValue.length];
+			for(int i=0; i<sum.length; i++)
+				sum[i] = currentValue[i] + newValue[i];
+			internalState.put(current.getKey(), new LongWritableArray(sum));
+		}
+	}
+
+	/**
+	 * This aggregator computes the union of the sets of longs (LongWritableSet) with the same key.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class ComponentLongSetUnionAggregator extends ComponentAggregatorAbstract{
+
+		@Override
+		protected void specificAggregate(Entry<Writable, Writable> current) {
+			LongWritableSet union = new LongWritableSet((LongWritableSet)internalState.get(current.getKey()));
+			union.addAll((LongWritableSet)current.getValue());
+			internalState.put(current.getKey(), union);
+		}
+	}
+
+	/**
+	 * This aggregator merges the partition summaries (PartitionSummaryWritable) with the same key.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class PartitionSummaryAggregator extends ComponentAggregatorAbstract{
+
+		@Override
+		protected void specificAggregate(Entry<Writable, Writable> current) {
+			PartitionSummaryWritable merged = new PartitionSummaryWritable();
+			merged.merge((PartitionSummaryWritable)internalState.get(current.getKey()));
+			merged.merge((PartitionSummaryWritable)current.getValue());
+			internalState.put(current.getKey(), merged);
+		}
+	}
+
+	/**
+	 * This aggregator keeps the maximum float coordinates (float[]{x,y}) for each key, updating the stored array in place.
 	 * 
 	 * @author Alessio Arleo
 	 *
 	 */
 	public static class ComponentFloatXYMaxAggregator extends ComponentAggregatorAbstract{
 
-		protected float[] checkEligibility(float[] mycoords,
-				float[] newest) {
-			float[] arrayToSave = new float[]{Math.max(mycoords[0], newest[0]),
-					Math.max(mycoords[1], newest[1])};
-			return arrayToSave;
+		protected void checkEligibility(float[] stored, float[] newest) {
+			stored[0] = Math.max(stored[0], newest[0]);
+			stored[1] = Math.max(stored[1], newest[1]);
+		}
+
+		@Override
+		protected Writable own(Writable value) {
+			return new FloatWritableArray(((FloatWritableArray)value).get());
 		}
 
 		@Override
 		protected void specificAggregate(Entry<Writable, Writable> current) {
-			float[] myData = ((FloatWritableArray)current.getValue()).get();
-			float[] foreignData = ((FloatWritableArray)internalState.get(current.getKey())).get();
-			internalState.put(current.getKey(), new FloatWritableArray(checkEligibility(myData, foreignData)));
+			checkEligibility(((FloatWritableArray)internalState.get(current.getKey())).get(), ((FloatWritableArray)current.getValue()).get());
 		}
 	}
 
 	/**
-	 * This aggregator keeps the minimum float coordinates (float[]{x,y}) for each key.
+	 * This aggregator keeps the minimum float coordinates (float[]{x,y}) for each key, updating the stored array in place.
 	 * 
 	 * @author Alessio Arleo
 	 *
@@ -153,10 +243,9 @@ public abstract class ComponentAggregatorAbstract implements Aggregator<MapWrita
 	public static class ComponentFloatXYMinAggregator extends ComponentFloatXYMaxAggregator{
 
 		@Override
-		protected float[] checkEligibility(float[] mycoords, float[] newest) {
-			float[] arrayToSave = new float[]{Math.min(mycoords[0], newest[0]),
-					Math.min(mycoords[1], newest[1])};
-			return arrayToSave;
+		protected void checkEligibility(float[] stored, float[] newest) {
+			stored[0] = Math.min(stored[0], newest[0]);
+			stored[1] = Math.min(stored[1], newest[1]);
 		};	
 
 	}
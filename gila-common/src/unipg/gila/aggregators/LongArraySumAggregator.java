@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.aggregators;
+
+import org.apache.giraph.aggregators.Aggregator;
+
+import unipg.gila.common.datastructures.LongWritableArray;
+
+/**
+ * This aggregator sums long arrays element-wise; an array shorter than the aggregated one is treated as zero-padded. It replaces a
+ * group of long sum aggregators (one per element) with a single one, so that the cost of the synchronization does not depend on
+ * the number of elements. The initial value is an empty array.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class LongArraySumAggregator implements Aggregator<LongWritableArray> {
+
+	protected LongWritableArray internalState;
+
+	public void aggregate(LongWritableArray in) {
+		long[] values = in.get();
+		long[] sums = internalState.get();
+		if(sums.length < values.length){
+			long[] grown = new long[values.length];
+			System.arraycopy(sums, 0, grown, 0, sums.length);
+			internalState = new LongWritableArray(grown);
+			sums = internalState.get();
+		}
+		for(int i=0; i<values.length; i++)
+			sums[i] += values[i];
+	}
+
+	public LongWritableArray createInitialValue() {
+		return new LongWritableArray(new long[0]);
+	}
+
+	public LongWritableArray getAggregatedValue() {
+		return internalState;
+	}
+
+	public void reset() {
+		internalState = createInitialValue();
+	}
+
+	public void setAggregatedValue(LongWritableArray in) {
+		internalState = in;
+	}
+
+}
@@ -19,13 +19,12 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 
 import unipg.gila.common.datastructures.LinkedListWritable;
-import unipg.gila.common.datastructures.LongWritableSet;
 
 /**
  * This class models the vertex value.
@@ -47,21 +46,38 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 	 * include the attractive forces or not at the next propagator step.
 	 */
 	protected boolean justReset; 
-	/**
-	 * A set which contains all the ids of the vertices already taken into account.
-	 */
-	protected LongWritableSet analyzed;
 	/**
 	 * The shortest incident edge.
 	 */
 	protected float shortestEdge = Float.MAX_VALUE;
+	/**
+	 * The distances from the pivots of the component, used by the pivot-MDS initial placement; null otherwise.
+	 */
+	protected int[] pivotDistances;
+	/**
+	 * The per-vertex factor applied to the component temperature by adaptive cooling strategies.
+	 */
+	protected float stepFactor = 1.0f;
+	/**
+	 * The energy (squared force module) of the vertex at the previous seeding step.
+	 */
+	protected float lastEnergy = Float.MAX_VALUE;
+	/**
+	 * The number of consecutive seeding steps in which the energy of the vertex decreased.
+	 */
+	protected int progress;
+	/**
+	 * The flags of the serialized form: the optional fields are only written when set.
+	 */
+	protected static final int justResetFlag = 1;
+	protected static final int adaptiveStateFlag = 2;
+	protected static final int pivotDistancesFlag = 4;
 //	protected LinkedListWritable<Writable> messageStack;
 
 	public CoordinateWritable(){
 		super();
 		fX = 0.0f;
 		fY = 0.0f;		
-		analyzed = new LongWritableSet();
 		justReset = false;
 	}
 	
@@ -69,7 +85,6 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 		super(x, y, component);
 		fX = 0.0f;
 		fY = 0.0f;			
-		analyzed = new LongWritableSet();
 		justReset = false;	
 	}
 	
@@ -77,37 +92,14 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 		super(x, y, oEs, component);		
 		fX = 0.0f;
 		fY = 0.0f;	
-		analyzed = new LongWritableSet();
 		justReset = false;	
 	}
 	
-	public boolean isAnalyzed(Writable neigh){
-		return analyzed.contains(neigh);
-	}
-	
 	/**
-	 * Set a new vertex as analyzed.
-	 * 
-	 * @param neigh The vertex id to be set as analyzed.
-	 */
-	public void analyze(LongWritable neigh){
-		analyzed.addElement(neigh);
-	}
-	
-	/**
-	 * Set a new vertex as analyzed.
-	 * 
-	 * @param neigh The vertex id to be set as analyzed.
-	 */
-	public void analyze(long neigh){
-		analyze(new LongWritable(neigh));
-	}
-	
-	/**
-	 * At the end of a drawing cycle (seeding + propagation) this method resets the Analyzed set.
+	 * At the end of a drawing cycle (seeding + propagation) this method resets the force vector; the ids of the vertices
+	 * already taken into account are not part of the vertex value and are kept by the layout computations on each worker.
 	 */
 	public void resetAnalyzed(){
-		analyzed.reset();
 		resetForceVector();
 		justReset=true;
 	}
@@ -145,10 +137,32 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 		this.fY += force[1];
 	}	
 	
+	/**
+	 * Adds the given components to the internal force vector.
+	 * @param forceX The X component to add.
+	 * @param forceY The Y component to add.
+	 */
+	public void addToForceVector(float forceX, float forceY){
+		this.fX += forceX;
+		this.fY += forceY;
+	}
+	
 	public float[] getForceVector(){
 		return new float[]{fX, fY};
 	}
 	
+	/**
+	 * Copies the force vector into the given array, without allocating a new one.
+	 * 
+	 * @param force A caller-owned array of size 2.
+	 * @return The given array, filled with the X and Y force components.
+	 */
+	public float[] getForceVector(float[] force){
+		force[0] = fX;
+		force[1] = fY;
+		return force;
+	}
+	
 	public void resetForceVector(){
 		this.fX = 0.0f;
 		this.fY = 0.0f;
@@ -163,6 +177,41 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 			this.shortestEdge = shortestEdge;
 	}
 	
+	public float getStepFactor() {
+		return stepFactor;
+	}
+	
+	public void setStepFactor(float stepFactor) {
+		this.stepFactor = stepFactor;
+	}
+	
+	public float getLastEnergy() {
+		return lastEnergy;
+	}
+	
+	public void setLastEnergy(float lastEnergy) {
+		this.lastEnergy = lastEnergy;
+	}
+	
+	public int getProgress() {
+		return progress;
+	}
+	
+	public void setProgress(int progress) {
+		this.progress = progress;
+	}
+	
+	/**
+	 * @return The distances from the pivots, or null if the pivot-MDS placement is not running.
+	 */
+	public int[] getPivotDistances() {
+		return pivotDistances;
+	}
+	
+	public void setPivotDistances(int[] pivotDistances) {
+		this.pivotDistances = pivotDistances;
+	}
+	
 //	public boolean isMessageStackEmpty(){
 //		return messageStack.isEmpty();
 //	}
@@ -201,11 +250,26 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 		super.readFields(in);
 		fX = in.readFloat();
 		fY = in.readFloat();
-		analyzed.readFields(in);
 //		if(in.readBoolean())
 //			messageStack.readFields(in);
-		justReset = in.readBoolean();
+		byte flags = in.readByte();
+		justReset = (flags & justResetFlag) != 0;
 		shortestEdge = in.readFloat();
+		if((flags & adaptiveStateFlag) != 0){
+			stepFactor = in.readFloat();
+			lastEnergy = in.readFloat();
+			progress = WritableUtils.readVInt(in);
+		}else{
+			stepFactor = 1.0f;
+			lastEnergy = Float.MAX_VALUE;
+			progress = 0;
+		}
+		if((flags & pivotDistancesFlag) != 0){
+			pivotDistances = new int[WritableUtils.readVInt(in)];
+			for(int i=0; i<pivotDistances.length; i++)
+				pivotDistances[i] = in.readInt();
+		}else
+			pivotDistances = null;
 	}
 
 	@Override
@@ -213,15 +277,26 @@ public class CoordinateWritable extends MiniCoordinateWritable{
 		super.write(out);
 		out.writeFloat(fX);
 		out.writeFloat(fY);
-		analyzed.write(out);
 //		if(messageLeftInStack() == 0)
 //			out.writeBoolean(false);
 //		else{
 //			out.writeBoolean(true);
 //			messageStack.write(out);
 //		}
-		out.writeBoolean(justReset);
+		boolean adaptiveState = stepFactor != 1.0f || lastEnergy != Float.MAX_VALUE || progress != 0;
+		out.writeByte((justReset ? justResetFlag : 0) | (adaptiveState ? adaptiveStateFlag : 0)
+				| (pivotDistances != null ? pivotDistancesFlag : 0));
 		out.writeFloat(shortestEdge);
+		if(adaptiveState){
+			out.writeFloat(stepFactor);
+			out.writeFloat(lastEnergy);
+			WritableUtils.writeVInt(out, progress);
+		}
+		if(pivotDistances != null){
+			WritableUtils.writeVInt(out, pivotDistances.length);
+			for(int i=0; i<pivotDistances.length; i++)
+				out.writeInt(pivotDistances[i]);
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -81,6 +81,18 @@ public class MiniCoordinateWritable implements Writable, WritableFactory{
 		return new float[]{x, y};
 	}
 	
+	/**
+	 * Copies the vertex coordinates into the given array, without allocating a new one.
+	 * 
+	 * @param coords A caller-owned array of size 2.
+	 * @return The given array, filled with the X and Y coordinates.
+	 */
+	public float[] getCoordinates(float[] coords){
+		coords[0] = x;
+		coords[1] = y;
+		return coords;
+	}
+	
 	public void setCoordinates(float x, float y) {
 		this.x = x;
 		this.y = y;
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.datastructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * A class representing an array of longs implementing the Writable interface.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class LongWritableArray implements Writable {
+
+	private long[] internalState;
+	
+	public LongWritableArray() {
+	}
+	
+	public LongWritableArray(long[] in){
+		internalState = new long[in.length];
+		for(int i=0; i<in.length; i++)
+			internalState[i] = in[i];
+	}
+	
+	public long[] get(){
+		return internalState;
+	}
+	
+	public void readFields(DataInput in) throws IOException {
+		int length = in.readInt();
+		internalState = new long[length];
+		for(int i=0; i<length; i++)
+			internalState[i] = in.readLong();
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(internalState.length);
+		for(int i=0; i<internalState.length; i++)
+			out.writeLong(internalState[i]);
+	}
+
+	@Override
+	public String toString() {
+		String result = "";
+		for(long l : internalState)
+			result += result.equals("") ? l : ", " + l;
+		return result;
+	}
+
+
+}
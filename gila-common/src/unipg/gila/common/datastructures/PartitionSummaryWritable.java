@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.datastructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * This class summarizes a set of vertices by their number, their total weight, their weighted centre of mass
+ * and their bounding box. Summaries can be merged, so they can be built incrementally and reduced by an aggregator.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class PartitionSummaryWritable implements Writable {
+
+	protected int count;
+	protected long weight;
+	protected double weightedX;
+	protected double weightedY;
+	protected float minX = Float.MAX_VALUE;
+	protected float minY = Float.MAX_VALUE;
+	protected float maxX = -Float.MAX_VALUE;
+	protected float maxY = -Float.MAX_VALUE;
+
+	public PartitionSummaryWritable() {
+	}
+
+	/**
+	 * Adds a vertex to the summary.
+	 */
+	public void add(float x, float y, int vertexWeight){
+		count++;
+		weight += vertexWeight;
+		weightedX += (double) x*vertexWeight;
+		weightedY += (double) y*vertexWeight;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+	}
+
+	/**
+	 * Merges another summary into this one.
+	 */
+	public void merge(PartitionSummaryWritable other){
+		count += other.count;
+		weight += other.weight;
+		weightedX += other.weightedX;
+		weightedY += other.weightedY;
+		minX = Math.min(minX, other.minX);
+		minY = Math.min(minY, other.minY);
+		maxX = Math.max(maxX, other.maxX);
+		maxY = Math.max(maxY, other.maxY);
+	}
+
+	public int getCount(){
+		return count;
+	}
+
+	public long getWeight(){
+		return weight;
+	}
+
+	public float getCentreX(){
+		return (float) (weightedX/weight);
+	}
+
+	public float getCentreY(){
+		return (float) (weightedY/weight);
+	}
+
+	/**
+	 * @return The length of the diagonal of the bounding box.
+	 */
+	public float getDiagonal(){
+		return (float) Math.sqrt((maxX - minX)*(maxX - minX) + (maxY - minY)*(maxY - minY));
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		count = in.readInt();
+		weight = in.readLong();
+		weightedX = in.readDouble();
+		weightedY = in.readDouble();
+		minX = in.readFloat();
+		minY = in.readFloat();
+		maxX = in.readFloat();
+		maxY = in.readFloat();
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(count);
+		out.writeLong(weight);
+		out.writeDouble(weightedX);
+		out.writeDouble(weightedY);
+		out.writeFloat(minX);
+		out.writeFloat(minY);
+		out.writeFloat(maxX);
+		out.writeFloat(maxY);
+	}
+
+	@Override
+	public String toString() {
+		return count + " vertices, weight " + weight + ", centre " + getCentreX() + " " + getCentreY() + ", box " + minX + " " + minY + " " + maxX + " " + maxY;
+	}
+
+}
@@ -37,6 +37,7 @@ public class PartitioningVertexValue implements Writable {
 	private float[] coords;
 	private LongWritableSet oneEdges;
 	private long component = -1;
+	private long twoHopSize;
 	
 	public PartitioningVertexValue() {
 	}
@@ -70,6 +71,18 @@ public class PartitioningVertexValue implements Writable {
 		this.component = component;
 	}
 	
+	/**
+	 * Returns the proxy of the two-hop flooding cost used by the two_hop load model of Spinner: the sum of the degrees of the
+	 * in-neighbours, as they were before the edges were made symmetric. It is not the number of vertices reachable in two hops.
+	 */
+	public long getTwoHopSize() {
+		return twoHopSize;
+	}
+
+	public void setTwoHopSize(long twoHopSize) {
+		this.twoHopSize = twoHopSize;
+	}
+	
 	public void addOneEdge(long id){
 		if(oneEdges == null)
 			oneEdges = new LongWritableSet();
@@ -97,6 +110,7 @@ public class PartitioningVertexValue implements Writable {
 		currentPartition = in.readShort();
 		newPartition = in.readShort();
 		component = in.readLong();
+		twoHopSize = in.readLong();
 		if(in.readBoolean()){
 			oneEdges = new LongWritableSet();
 			oneEdges.readFields(in);
@@ -109,6 +123,7 @@ public class PartitioningVertexValue implements Writable {
 		out.writeShort(currentPartition);
 		out.writeShort(newPartition);
 		out.writeLong(component);
+		out.writeLong(twoHopSize);
 		if(getOneEdgesNo() == 0)
 			out.writeBoolean(false);
 		else
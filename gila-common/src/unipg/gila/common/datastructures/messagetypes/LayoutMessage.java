@@ -20,16 +20,41 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 
 
 /**
+ * Layout messages can be written in two formats. The plain one writes the ttl and the weight as ints, followed by the payload
+ * vertex and the two coordinates as floats. The compact one, enabled on each worker with {@link #setCodec(boolean, boolean)},
+ * starts with a byte holding a marker bit, a quantization bit and the ttl; then the weight, the partition and the id of the payload
+ * are written as variable-length integers, while its layer is omitted and taken from {@link #setImplicitLayer(int)} when reading.
+ * When quantized, the coordinates are written as two 16-bit fixed point values sharing a one-byte exponent, otherwise as two floats.
+ * 
+ * Since no plain message starts with a byte in the range of the compact header, the format is detected when reading and the two
+ * formats can be mixed; messages whose ttl or payload layer cannot be represented in the compact format are written in the plain one.
+ * Messages with a scale other than one, i.e. which survived a sampled flooding, are prefixed in both formats by a marker byte and
+ * by the scale as a float.
+ * 
  * @author Alessio Arleo
  *
  */
 public class LayoutMessage extends LayoutMessageMatrix<LayeredPartitionedLongWritable> {
 
+	protected static final int compactMarker = 0x80;
+	protected static final int compactMarkerMask = 0xC0;
+	protected static final int quantizedFlag = 0x20;
+	protected static final int maxCompactTTL = 0x1F;
+	protected static final int quantizationBits = 15;
+	protected static final int scaledMarker = 0xC0;
+
+	private static volatile boolean compactWrites = false;
+	private static volatile boolean quantizedWrites = false;
+	private static volatile int implicitLayer = 0;
+
+	protected float scale = 1.0f;
+
 	/**
 	 * Parameter-less constructor. 
 	 */
@@ -65,11 +90,66 @@ public class LayoutMessage extends LayoutMessageMatrix<LayeredPartitionedLongWri
 	public MessageWritable<LayeredPartitionedLongWritable, float[]> propagate() {
 		LayoutMessage toReturn = new LayoutMessage(payloadVertex, ttl-1, new float[]{value[0], value[1]});
 		toReturn.setWeight(weight);
+		toReturn.setScale(scale);
 		//			if(getDeg() != -1)
 		//				toReturn.setDeg(getDeg());
 		return toReturn;
 	}
 
+	/**
+	 * Propagates the message into the given one instead of creating a new LayoutMessage: payload, coordinates, weight and scale
+	 * are copied and the time to live is decreased. Since Giraph serializes messages when they are sent, the same
+	 * target can be reused for every propagation performed by a computation.
+	 * 
+	 * @param target The message to overwrite.
+	 * @return The given message.
+	 */
+	public LayoutMessage propagateInto(LayoutMessage target) {
+		if(target.value == null)
+			target.value = new float[2];
+		target.payloadVertex = payloadVertex;
+		target.ttl = ttl - 1;
+		target.value[0] = value[0];
+		target.value[1] = value[1];
+		target.weight = weight;
+		target.scale = scale;
+		return target;
+	}
+
+	/**
+	 * @return the number of payloads represented by this message, greater than one if the message survived a sampling.
+	 */
+	public float getScale(){
+		return scale;
+	}
+
+	/**
+	 * @param scale the number of payloads represented by this message.
+	 */
+	public void setScale(float scale){
+		this.scale = scale;
+	}
+
+	/**
+	 * Sets the format used by this worker to write the messages.
+	 * 
+	 * @param compact Whether to use the compact format.
+	 * @param quantize Whether to quantize the coordinates when using the compact format.
+	 */
+	public static void setCodec(boolean compact, boolean quantize){
+		compactWrites = compact;
+		quantizedWrites = quantize;
+	}
+
+	/**
+	 * Sets the layer of the payloads written in the compact format; it must be the same on every worker.
+	 * 
+	 * @param layer The layer being drawn.
+	 */
+	public static void setImplicitLayer(int layer){
+		implicitLayer = layer;
+	}
+
 	/* (non-Javadoc)
 	 * @see unipg.dafne.common.datastructures.messagetypes.MessageWritable#propagateAndDie()
 	 */
@@ -77,9 +157,90 @@ public class LayoutMessage extends LayoutMessageMatrix<LayeredPartitionedLongWri
 	public MessageWritable<LayeredPartitionedLongWritable, float[]> propagateAndDie() {
 		LayoutMessage toReturn = new LayoutMessage(payloadVertex, new float[]{value[0], value[1]});
 		toReturn.setWeight(weight);
+		toReturn.setScale(scale);
 		return toReturn;
 	}
 
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		int header = in.readUnsignedByte();
+		scale = 1.0f;
+		if(header == scaledMarker){
+			scale = in.readFloat();
+			header = in.readUnsignedByte();
+		}
+		if((header & compactMarkerMask) != compactMarker){
+			ttl = (header << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+			weight = in.readInt();
+			specificRead(in);
+			return;
+		}
+		ttl = header & maxCompactTTL;
+		weight = WritableUtils.readVInt(in);
+		payloadVertex = new LayeredPartitionedLongWritable((short) WritableUtils.readVInt(in), WritableUtils.readVLong(in), implicitLayer);
+		value = new float[2];
+		if((header & quantizedFlag) != 0){
+			int exponent = in.readByte() - quantizationBits;
+			value[0] = Math.scalb((float) in.readShort(), exponent);
+			value[1] = Math.scalb((float) in.readShort(), exponent);
+		}else{
+			value[0] = in.readFloat();
+			value[1] = in.readFloat();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		if(scale != 1.0f){
+			out.writeByte(scaledMarker);
+			out.writeFloat(scale);
+		}
+		if(!compactWrites || ttl < 0 || ttl > maxCompactTTL || payloadVertex.getLayer() != implicitLayer){
+			super.write(out);
+			return;
+		}
+		int exponent = quantizedWrites ? quantizationExponent() : Integer.MIN_VALUE;
+		out.writeByte(compactMarker | (exponent != Integer.MIN_VALUE ? quantizedFlag : 0) | ttl);
+		WritableUtils.writeVInt(out, weight);
+		WritableUtils.writeVInt(out, payloadVertex.getPartition());
+		WritableUtils.writeVLong(out, payloadVertex.getId());
+		if(exponent != Integer.MIN_VALUE){
+			out.writeByte(exponent);
+			out.writeShort(quantize(value[0], exponent));
+			out.writeShort(quantize(value[1], exponent));
+		}else{
+			out.writeFloat(value[0]);
+			out.writeFloat(value[1]);
+		}
+	}
+
+	/**
+	 * Returns the smallest exponent e such that both coordinates lie in (-2^e, 2^e), or Integer.MIN_VALUE if the coordinates
+	 * cannot be quantized.
+	 */
+	private int quantizationExponent(){
+		float max = Math.max(Math.abs(value[0]), Math.abs(value[1]));
+		if(Float.isNaN(max) || Float.isInfinite(max))
+			return Integer.MIN_VALUE;
+		if(max == 0.0f)
+			return 0;
+		int exponent = Math.getExponent(max) + 1;
+		if(exponent < Byte.MIN_VALUE || exponent > Byte.MAX_VALUE)
+			return Integer.MIN_VALUE;
+		return exponent;
+	}
+
+	private static short quantize(float coordinate, int exponent){
+		int quantized = Math.round(Math.scalb(coordinate, quantizationBits - exponent));
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, quantized));
+	}
+
 	/* (non-Javadoc)
 	 * @see unipg.dafne.common.datastructures.messagetypes.MessageWritable#specificRead(java.io.DataInput)
 	 */
@@ -114,7 +275,9 @@ public class LayoutMessage extends LayoutMessageMatrix<LayeredPartitionedLongWri
 	 */
 	@Override
 	public LayoutMessage copy() {
-		return new LayoutMessage(payloadVertex.copy(), ttl, value);
+		LayoutMessage toReturn = new LayoutMessage(payloadVertex.copy(), ttl, value);
+		toReturn.setScale(scale);
+		return toReturn;
 	}
 	
 	/* (non-Javadoc)
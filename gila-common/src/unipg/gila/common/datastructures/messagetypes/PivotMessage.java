@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.datastructures.messagetypes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * This kind of message is used by the breadth first visits of the pivot-MDS placement; it carries the index of the pivot
+ * the visit started from (as payload) and the tentative distance from it (as value).
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class PivotMessage extends MessageWritable<Integer, Integer> {
+
+	/**
+	 * Parameter-less constructor.
+	 * 
+	 */
+	public PivotMessage() {
+		super();
+	}
+
+	public PivotMessage(int pivot, int distance) {
+		super(pivot, distance);
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#propagate()
+	 */
+	@Override
+	public MessageWritable<Integer, Integer> propagate() {
+		return new PivotMessage(payloadVertex, value);
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#propagateAndDie()
+	 */
+	@Override
+	public MessageWritable<Integer, Integer> propagateAndDie() {
+		return new PivotMessage(payloadVertex, value);
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#specificRead(java.io.DataInput)
+	 */
+	@Override
+	protected void specificRead(DataInput in) throws IOException {
+		payloadVertex = in.readInt();
+		value = in.readInt();
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#specificWrite(java.io.DataOutput)
+	 */
+	@Override
+	protected void specificWrite(DataOutput out) throws IOException {
+		out.writeInt(payloadVertex);
+		out.writeInt(value);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.WritableFactory#newInstance()
+	 */
+	public Writable newInstance() {
+		return new PivotMessage();
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.common.datastructures.messagetypes.MessageWritable#copy()
+	 */
+	@Override
+	public PivotMessage copy() {
+		return new PivotMessage(payloadVertex, value);
+	}
+
+	@Override
+	public String toString() {
+		return "pivot " + getPayloadVertex() + " distance " + getValue();
+	}
+
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.multi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.master.MasterCompute;
+import org.apache.giraph.partition.BasicPartition;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.Progressable;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+
+/**
+ * A partition which keeps a separate vertex map for each layer of the multi-scale graph. While a LayerLocalComputation is
+ * scheduled the partition iterates only the vertices of the current layer, so the vertices of the other layers are neither
+ * visited nor handed to the computation; otherwise, and between supersteps (input, output, checkpoints), it iterates all of them.
+ *
+ * The master broadcasts through broadcastLayerLocal whether the scheduled computation is layer-local; the LayerIndexedWorkerContext of
+ * gila-multi then publishes on each worker the layer read from the {@link #currentLayerAggregator} aggregator, i.e. the same value the
+ * computations read in the superstep. Set it through giraph.partitionClass and giraph.workerContextClass. Since Giraph counts the vertices
+ * while iterating them, when the filter is active the vertex and edge totals of the following superstep refer to the visited layer only.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class LayerIndexedPartition<V extends Writable, E extends Writable> extends BasicPartition<LayeredPartitionedLongWritable, V, E> {
+
+	public static final String layerLocalBroadcast = "BRD_LAYER_LOCAL";
+	public static final String currentLayerAggregator = "AGG_CURRENTLAYER";
+	public static final int allLayers = -1;
+
+	private static volatile int activeLayer = allLayers;
+
+	private ConcurrentMap<Integer, ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>>> layers;
+
+	/**
+	 * Broadcasts whether the workers have to visit only the current layer in the next superstep, i.e. whether the scheduled computation
+	 * is a LayerLocalComputation. It must be called after the computation for the superstep has been set.
+	 *
+	 * @param master The master.
+	 */
+	public static void broadcastLayerLocal(MasterCompute master){
+		boolean layerLocal = master.getComputation() != null && LayerLocalComputation.class.isAssignableFrom(master.getComputation());
+		master.broadcast(layerLocalBroadcast, new BooleanWritable(layerLocal));
+	}
+
+	/**
+	 * Sets the layer visited by the partitions of this worker, or allLayers.
+	 */
+	public static void setActiveLayer(int layer){
+		activeLayer = layer;
+	}
+
+	public static int getActiveLayer(){
+		return activeLayer;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.BasicPartition#initialize(int, org.apache.hadoop.util.Progressable)
+	 */
+	@Override
+	public void initialize(int partitionId, Progressable progressable) {
+		super.initialize(partitionId, progressable);
+		layers = Maps.newConcurrentMap();
+	}
+
+	private ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> layer(int layer){
+		return layers.get(layer);
+	}
+
+	private ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> layerOrCreate(int layer){
+		ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map = layers.get(layer);
+		if(map == null){
+			ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> created = Maps.newConcurrentMap();
+			map = layers.putIfAbsent(layer, created);
+			if(map == null)
+				map = created;
+		}
+		return map;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#getVertex(org.apache.hadoop.io.WritableComparable)
+	 */
+	@Override
+	public Vertex<LayeredPartitionedLongWritable, V, E> getVertex(LayeredPartitionedLongWritable vertexIndex) {
+		ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map = layer(vertexIndex.getLayer());
+		return map == null ? null : map.get(vertexIndex);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#putVertex(org.apache.giraph.graph.Vertex)
+	 */
+	@Override
+	public Vertex<LayeredPartitionedLongWritable, V, E> putVertex(Vertex<LayeredPartitionedLongWritable, V, E> vertex) {
+		return layerOrCreate(vertex.getId().getLayer()).put(vertex.getId(), vertex);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#removeVertex(org.apache.hadoop.io.WritableComparable)
+	 */
+	@Override
+	public Vertex<LayeredPartitionedLongWritable, V, E> removeVertex(LayeredPartitionedLongWritable vertexIndex) {
+		ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map = layer(vertexIndex.getLayer());
+		return map == null ? null : map.remove(vertexIndex);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#putOrCombine(org.apache.giraph.graph.Vertex)
+	 */
+	@Override
+	public boolean putOrCombine(Vertex<LayeredPartitionedLongWritable, V, E> vertex) {
+		ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map = layerOrCreate(vertex.getId().getLayer());
+		Vertex<LayeredPartitionedLongWritable, V, E> originalVertex = map.get(vertex.getId());
+		if(originalVertex == null){
+			originalVertex = map.putIfAbsent(vertex.getId(), vertex);
+			if(originalVertex == null)
+				return true;
+		}
+		synchronized (originalVertex) {
+			getVertexValueCombiner().combine(originalVertex.getValue(), vertex.getValue());
+			for(Edge<LayeredPartitionedLongWritable, E> edge : vertex.getEdges())
+				originalVertex.addEdge(edge);
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#addPartition(org.apache.giraph.partition.Partition)
+	 */
+	@Override
+	public void addPartition(Partition<LayeredPartitionedLongWritable, V, E> partition) {
+		Iterator<Vertex<LayeredPartitionedLongWritable, V, E>> vertices = partition instanceof LayerIndexedPartition ?
+				((LayerIndexedPartition<V, E>) partition).allVertices() : partition.iterator();
+		while(vertices.hasNext())
+			putVertex(vertices.next());
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#getVertexCount()
+	 */
+	@Override
+	public long getVertexCount() {
+		long count = 0;
+		for(ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map : layers.values())
+			count += map.size();
+		return count;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#getEdgeCount()
+	 */
+	@Override
+	public long getEdgeCount() {
+		long edges = 0;
+		Iterator<Vertex<LayeredPartitionedLongWritable, V, E>> vertices = allVertices();
+		while(vertices.hasNext())
+			edges += vertices.next().getNumEdges();
+		return edges;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.Partition#saveVertex(org.apache.giraph.graph.Vertex)
+	 */
+	@Override
+	public void saveVertex(Vertex<LayeredPartitionedLongWritable, V, E> vertex) {
+		//VERTICES ARE STORED AS OBJECTS, NOTHING TO SAVE
+	}
+
+	/**
+	 * Iterates the vertices of the active layer, or all of them if no layer is active.
+	 */
+	@Override
+	public Iterator<Vertex<LayeredPartitionedLongWritable, V, E>> iterator() {
+		int layer = activeLayer;
+		if(layer == allLayers)
+			return allVertices();
+		ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map = layer(layer);
+		if(map == null)
+			return Collections.<Vertex<LayeredPartitionedLongWritable, V, E>>emptyIterator();
+		return map.values().iterator();
+	}
+
+	/**
+	 * Iterates the vertices of all the layers.
+	 */
+	public Iterator<Vertex<LayeredPartitionedLongWritable, V, E>> allVertices() {
+		Iterator<ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>>> maps = layers.values().iterator();
+		Iterator<Iterator<Vertex<LayeredPartitionedLongWritable, V, E>>> iterators = Iterators.transform(maps,
+				new Function<ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>>, Iterator<Vertex<LayeredPartitionedLongWritable, V, E>>>() {
+			@Override
+			public Iterator<Vertex<LayeredPartitionedLongWritable, V, E>> apply(
+					ConcurrentMap<LayeredPartitionedLongWritable, Vertex<LayeredPartitionedLongWritable, V, E>> map) {
+				return map.values().iterator();
+			}
+		});
+		return Iterators.concat(iterators);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.BasicPartition#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		super.readFields(in);
+		layers = Maps.newConcurrentMap();
+		int vertices = in.readInt();
+		for(int i=0; i<vertices; i++){
+			progress();
+			putVertex(WritableUtils.<LayeredPartitionedLongWritable, V, E>readVertexFromDataInput(in, getConf()));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.partition.BasicPartition#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		out.writeInt((int) getVertexCount());
+		Iterator<Vertex<LayeredPartitionedLongWritable, V, E>> vertices = allVertices();
+		while(vertices.hasNext()){
+			progress();
+			WritableUtils.writeVertexToDataOutput(out, vertices.next(), getConf());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "(id=" + getId() + ",layers=" + layers.size() + ",V=" + getVertexCount() + ")";
+	}
+
+}
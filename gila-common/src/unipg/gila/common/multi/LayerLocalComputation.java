@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.multi;
+
+/**
+ * A marker for the computations which act only on the vertices of the current layer, i.e. whose compute method returns
+ * immediately for any vertex whose layer differs from the "AGG_CURRENTLAYER" aggregator. When one of them is scheduled the
+ * LayerIndexedPartition visits only the vertices of that layer.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public interface LayerLocalComputation {
+
+}
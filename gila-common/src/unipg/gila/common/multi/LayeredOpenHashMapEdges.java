@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.multi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.giraph.edge.ConfigurableOutEdges;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.MutableEdge;
+import org.apache.giraph.edge.StrictRandomAccessOutEdges;
+import org.apache.giraph.utils.EdgeIterables;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * An OutEdges implementation for the layered graph with integer edge weights, the counterpart of OpenHashMapEdges for
+ * LayeredPartitionedLongWritable ids. The edges are kept in three dense primitive arrays (id, packed partition and layer, weight)
+ * indexed by an open addressing table with linear probing, so getEdgeValue is a constant time lookup and the iteration walks the
+ * arrays reusing a single edge object, without allocating per edge. As for the other Giraph primitive edge stores, the ids and
+ * values returned by the iterator and by getEdgeValue are reused and have to be copied to be kept; getEdgeValue returns null
+ * if there is no edge towards the given vertex.
+ *
+ * Set it through giraph.outEdgesClass.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class LayeredOpenHashMapEdges extends ConfigurableOutEdges<LayeredPartitionedLongWritable, IntWritable>
+implements StrictRandomAccessOutEdges<LayeredPartitionedLongWritable, IntWritable> {
+
+	private long[] ids;
+	private long[] tags;
+	private int[] weights;
+	private int size;
+
+	/**
+	 * The open addressing table; each slot holds the position of an edge in the dense arrays plus one, or 0 if empty.
+	 */
+	private int[] table;
+	private int mask;
+
+	private final IntWritable repValue = new IntWritable();
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.OutEdges#initialize(java.lang.Iterable)
+	 */
+	@Override
+	public void initialize(Iterable<Edge<LayeredPartitionedLongWritable, IntWritable>> edges) {
+		EdgeIterables.initialize(this, edges);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.OutEdges#initialize(int)
+	 */
+	@Override
+	public void initialize(int capacity) {
+		capacity = Math.max(2, capacity);
+		ids = new long[capacity];
+		tags = new long[capacity];
+		weights = new int[capacity];
+		size = 0;
+		table = new int[tableSize(capacity)];
+		mask = table.length - 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.OutEdges#initialize()
+	 */
+	@Override
+	public void initialize() {
+		initialize(2);
+	}
+
+	/**
+	 * The smallest power of two keeping the load factor of the table at most 1/2.
+	 */
+	private static int tableSize(int capacity){
+		return Integer.highestOneBit(Math.max(4, capacity*2 - 1)) << 1;
+	}
+
+	private static long tagOf(LayeredPartitionedLongWritable id){
+		return PackedLayeredIds.tag(id.getPartition(), id.getLayer());
+	}
+
+	/**
+	 * Returns the slot holding the given edge or, if missing, the empty slot where it would be inserted.
+	 */
+	private int slotOf(long tag, long id){
+		int slot = PackedLayeredIds.hash(tag, id) & mask;
+		int position;
+		while((position = table[slot]) != 0){
+			if(ids[position - 1] == id && tags[position - 1] == tag)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.OutEdges#add(org.apache.giraph.edge.Edge)
+	 */
+	@Override
+	public void add(Edge<LayeredPartitionedLongWritable, IntWritable> edge) {
+		put(tagOf(edge.getTargetVertexId()), edge.getTargetVertexId().getId(), edge.getValue().get());
+	}
+
+	/**
+	 * Adds an edge or, if already present, replaces its weight.
+	 */
+	private void put(long tag, long id, int weight){
+		int slot = slotOf(tag, id);
+		if(table[slot] != 0){
+			weights[table[slot] - 1] = weight;
+			return;
+		}
+		if(size == ids.length){
+			int capacity = ids.length*2;
+			ids = Arrays.copyOf(ids, capacity);
+			tags = Arrays.copyOf(tags, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+		ids[size] = id;
+		tags[size] = tag;
+		weights[size] = weight;
+		size++;
+		table[slot] = size;
+		if(size*2 > table.length)
+			rehash(tableSize(size*2));
+	}
+
+	private void rehash(int tableSize){
+		table = new int[tableSize];
+		mask = tableSize - 1;
+		for(int i=0; i<size; i++)
+			table[slotOf(tags[i], ids[i])] = i + 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.OutEdges#remove(org.apache.hadoop.io.WritableComparable)
+	 */
+	@Override
+	public void remove(LayeredPartitionedLongWritable targetVertexId) {
+		int slot = slotOf(tagOf(targetVertexId), targetVertexId.getId());
+		if(table[slot] == 0)
+			return;
+		int position = table[slot] - 1;
+		shiftSlots(slot);
+		int last = size - 1;
+		if(position != last){
+			table[slotOf(tags[last], ids[last])] = position + 1;
+			ids[position] = ids[last];
+			tags[position] = tags[last];
+			weights[position] = weights[last];
+		}
+		size--;
+	}
+
+	/**
+	 * Empties the given slot, shifting back the following entries of the probe sequence so that none of them becomes unreachable.
+	 */
+	private void shiftSlots(int slot){
+		int last;
+		while(true){
+			last = slot;
+			slot = (slot + 1) & mask;
+			while(true){
+				if(table[slot] == 0){
+					table[last] = 0;
+					return;
+				}
+				int position = table[slot] - 1;
+				int ideal = PackedLayeredIds.hash(tags[position], ids[position]) & mask;
+				if(last <= slot ? last >= ideal || ideal > slot : last >= ideal && ideal > slot)
+					break;
+				slot = (slot + 1) & mask;
+			}
+			table[last] = table[slot];
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.OutEdges#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.StrictRandomAccessOutEdges#getEdgeValue(org.apache.hadoop.io.WritableComparable)
+	 */
+	@Override
+	public IntWritable getEdgeValue(LayeredPartitionedLongWritable targetVertexId) {
+		int position = table[slotOf(tagOf(targetVertexId), targetVertexId.getId())];
+		if(position == 0)
+			return null;
+		repValue.set(weights[position - 1]);
+		return repValue;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.edge.StrictRandomAccessOutEdges#setEdgeValue(org.apache.hadoop.io.WritableComparable, org.apache.hadoop.io.Writable)
+	 */
+	@Override
+	public void setEdgeValue(LayeredPartitionedLongWritable targetVertexId, IntWritable edgeValue) {
+		int position = table[slotOf(tagOf(targetVertexId), targetVertexId.getId())];
+		if(position != 0)
+			weights[position - 1] = edgeValue.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<Edge<LayeredPartitionedLongWritable, IntWritable>> iterator() {
+		return new Iterator<Edge<LayeredPartitionedLongWritable, IntWritable>>() {
+			private int next = 0;
+			private final MutableEdge<LayeredPartitionedLongWritable, IntWritable> repEdge =
+					EdgeFactory.createReusable(new LayeredPartitionedLongWritable(), new IntWritable());
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public Edge<LayeredPartitionedLongWritable, IntWritable> next() {
+				if(next >= size)
+					throw new NoSuchElementException();
+				LayeredPartitionedLongWritable target = repEdge.getTargetVertexId();
+				target.setPartition(PackedLayeredIds.partitionOf(tags[next]));
+				target.setId(ids[next]);
+				target.setLayer(PackedLayeredIds.layerOf(tags[next]));
+				repEdge.getValue().set(weights[next]);
+				next++;
+				return repEdge;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#readFields(java.io.DataInput)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		int numEdges = in.readInt();
+		initialize(numEdges);
+		for(int i=0; i<numEdges; i++){
+			short partition = (short) WritableUtils.readVInt(in);
+			int layer = WritableUtils.readVInt(in);
+			long id = WritableUtils.readVLong(in);
+			put(PackedLayeredIds.tag(partition, layer), id, WritableUtils.readVInt(in));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.hadoop.io.Writable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for(int i=0; i<size; i++){
+			WritableUtils.writeVInt(out, PackedLayeredIds.partitionOf(tags[i]));
+			WritableUtils.writeVInt(out, PackedLayeredIds.layerOf(tags[i]));
+			WritableUtils.writeVLong(out, ids[i]);
+			WritableUtils.writeVInt(out, weights[i]);
+		}
+	}
+
+}
@@ -101,7 +101,7 @@ public class LayeredPartitionedLongWritable extends PartitionedLongWritable {
 	
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return PackedLayeredIds.hash(partition, id, layer);
 	}
 
 	@Override
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.common.multi;
+
+/**
+ * This class packs the partition and the layer of a vertex id into a single long tag, holding the partition in the upper 32 bits and
+ * the layer in the lower 32 bits, and hashes (tag, id) pairs without allocating. LayeredPartitionedLongWritable and
+ * LayeredOpenHashMapEdges share the hash, so that an id hashes alike whether it is stored as an object or as a primitive pair.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class PackedLayeredIds {
+
+	private PackedLayeredIds(){
+	}
+
+	/**
+	 * Packs a partition and a layer into a tag.
+	 */
+	public static long tag(short partition, int layer){
+		return ((long) partition << 32) | (layer & 0xFFFFFFFFL);
+	}
+
+	public static short partitionOf(long tag){
+		return (short) (tag >> 32);
+	}
+
+	public static int layerOf(long tag){
+		return (int) tag;
+	}
+
+	/**
+	 * The hash of the given id components.
+	 */
+	public static int hash(short partition, long id, int layer){
+		return hash(tag(partition, layer), id);
+	}
+
+	/**
+	 * The hash of a tag and an id.
+	 */
+	public static int hash(long tag, long id){
+		return (int) mix(id ^ mix(tag));
+	}
+
+	/**
+	 * The finalization step of MurmurHash3.
+	 */
+	protected static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.coolingstrategies;
+
+import unipg.gila.common.coordinatewritables.CoordinateWritable;
+
+/**
+ * Extension of the CoolingStrategy abstract class implementing a per-vertex version of the adaptive step length by Hu. The component
+ * temperature is cooled linearly, as in LinearCoolingStrategy, and acts as the maximum step, so that the layout is still bound to
+ * converge; each vertex in addition keeps its own step factor, which is divided by the cooling speed (given by "layout.coolingSpeed") after a number of consecutive steps in which its energy decreased, and multiplied by it
+ * as soon as its energy increases. The optional second argument (set through "layout.coolingStrategy.extraOptions") is the number of
+ * consecutive improvements needed to grow the step (5 by default).
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class AdaptiveCoolingStrategy extends CoolingStrategy {
+
+	protected static final int progressThresholdDefault = 5;
+	protected static final float minimumStepFactor = 0.0001f;
+
+	private float coolingSpeed;
+	private int progressThreshold;
+	
+	public AdaptiveCoolingStrategy(String[] args) {
+		super(args);
+	}
+
+	@Override
+	protected void generateCoolingStrategy(String[] args) {
+		coolingSpeed = Float.parseFloat(args[0]);
+		if(args.length > 1 && !args[1].equals(""))
+			progressThreshold = Integer.parseInt(args[1]);
+		else
+			progressThreshold = progressThresholdDefault;
+	}
+
+	@Override
+	public float cool(float temperature) {
+		return temperature*coolingSpeed;
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.coolingstrategies.CoolingStrategy#vertexStepFactor(unipg.gila.common.coordinatewritables.CoordinateWritable, float)
+	 */
+	@Override
+	public float vertexStepFactor(CoordinateWritable vertex, float energy) {
+		float stepFactor = vertex.getStepFactor();
+		if(energy < vertex.getLastEnergy()){
+			int progress = vertex.getProgress() + 1;
+			if(progress >= progressThreshold){
+				progress = 0;
+				stepFactor = Math.min(1.0f, stepFactor/coolingSpeed);
+			}
+			vertex.setProgress(progress);
+		}else{
+			vertex.setProgress(0);
+			stepFactor = Math.max(minimumStepFactor, stepFactor*coolingSpeed);
+		}
+		vertex.setLastEnergy(energy);
+		vertex.setStepFactor(stepFactor);
+		return stepFactor;
+	}
+
+}
@@ -15,6 +15,8 @@
  *******************************************************************************/
 package unipg.gila.coolingstrategies;
 
+import unipg.gila.common.coordinatewritables.CoordinateWritable;
+
 /**
  * This abstract class defines the behaviour of a cooling strategy. Its abstract methods include a custom building
  * method and a "cool" method that when called returns the cooled fraction of the initial temperature.
@@ -42,4 +44,17 @@ public abstract class CoolingStrategy {
 	 */
 	public abstract float cool(float temperature);  
 	
+	/**
+	 * This method is called by the seeders for each moving vertex and returns the factor by which the temperature of its component
+	 * is multiplied to obtain the maximum displacement of the vertex. Strategies may keep their per-vertex state in the vertex value.
+	 * The default implementation returns 1, so that all the vertices of a component share its temperature.
+	 * 
+	 * @param vertex The value of the vertex.
+	 * @param energy The squared module of the force acting on the vertex.
+	 * @return The factor to apply to the component temperature.
+	 */
+	public float vertexStepFactor(CoordinateWritable vertex, float energy){
+		return 1.0f;
+	}
+	
 }
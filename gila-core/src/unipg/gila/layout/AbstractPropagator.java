@@ -18,10 +18,16 @@
  */
 package unipg.gila.layout;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map.Entry;
 
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
+import org.apache.giraph.edge.Edge;
 import org.apache.giraph.graph.AbstractComputation;
 import org.apache.giraph.graph.GraphState;
 import org.apache.giraph.graph.GraphTaskManager;
@@ -29,12 +35,16 @@ import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.worker.WorkerContext;
 import org.apache.giraph.worker.WorkerGlobalCommUsage;
 import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
-import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Writable;
 import org.apache.log4j.Logger;
 
 import unipg.gila.common.coordinatewritables.CoordinateWritable;
+import unipg.gila.common.datastructures.PartitionSummaryWritable;
+import unipg.gila.common.datastructures.PartitionedLongWritable;
 import unipg.gila.common.datastructures.messagetypes.LayoutMessage;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 import unipg.gila.layout.force.FR;
@@ -53,6 +63,41 @@ import unipg.gila.utils.Toolbox;
  * 
  * 3) If the messages queues are activated, a portion of the messages is popped from the queue and broadcasted.
  * 
+ * When the Barnes-Hut repulsion is active ("layout.repulsion.barnesHut"), the repulsive forces exerted by the vertices hosted
+ * on the same worker are computed once per round from the worker quadtree; flooded messages then only contribute the
+ * repulsion of remote vertices, so that a low TTL still yields a global-quality repulsion.
+ * 
+ * When the partition summaries are active ("layout.repulsion.partitionSummaries"), each vertex is repulsed once per round by the
+ * centre of mass of every other partition of its component, as aggregated by the seeders; flooded messages then only contribute
+ * the repulsion of vertices in the same partition.
+ * 
+ * When the local coordinate table is active ("layout.flooding.localTable"), at the first superstep of each round every vertex visits
+ * the table up to the maximum TTL and computes the forces exerted by the k-hop neighbours hosted on the same worker; the payloads
+ * found are then flooded only towards the neighbours hosted on other workers.
+ * 
+ * When the sampled flooding is active ("layout.flooding.sampleBudget" greater than zero), each vertex forwards at most that many
+ * fresh payloads per superstep, drawn by a {@link PayloadReservoir} according to their weight; the repulsion exerted by a sampled
+ * payload is multiplied by its scale, the inverse of its inclusion probability, so that its expected value is not biased.
+ * 
+ * When the deduplication is active ("layout.flooding.dedup"), messages carrying a payload already sent to the same target by any
+ * thread of the worker during the same superstep are dropped before being serialized.
+ * 
+ * When the delta broadcasts are active ("layout.flooding.delta"), the coordinates of every payload received are cached in the
+ * {@link CoordinateCache}; from the second round of a layout pass on, at the first superstep of each round the forces exerted by
+ * all the cached payloads are computed, and replaced by the ones computed from the fresh coordinates of the payloads whose
+ * messages arrive during the round, so that the vertices which did not move enough to send their coordinates are still accounted.
+ * 
+ * When the neighbourhood index is active ("layout.flooding.index"), the payloads analyzed during the first round of a layout pass are
+ * recorded into the {@link NeighbourhoodIndex} together with their distance; in the following rounds every payload arrives in a
+ * single hop, the attractive forces are computed only for the payloads recorded at distance one and no message is propagated.
+ * 
+ * When a fused seeder is provided by {@link #createFusedSeeder()} and the master flags the superstep as a seeding one, after the
+ * messages are processed each vertex is also seeded in the same superstep, so that the last hop of a round overlaps with the first
+ * hop of the next one.
+ * 
+ * When the hub mode is active ("layout.hubs.parallel"), the data of the analyzed messages is buffered and the forces are accumulated
+ * after the loop; for vertices which analyzed more than "layout.hubs.threshold" messages the accumulation is split across a fork-join pool.
+ * 
  * @author Alessio Arleo
  *
  */
@@ -69,6 +114,76 @@ public class AbstractPropagator<V extends CoordinateWritable, E extends IntWrita
 
 	protected Force force;
 
+	//REUSABLE BUFFERS, SO THAT NO OBJECT IS CREATED FOR EACH MESSAGE
+	protected final float[] mycoords = new float[2];
+	protected final float[] finalForce = new float[2];
+	protected final float[] repulsiveForce = new float[2];
+	protected final LayoutMessage propagatedMessage = new LayoutMessage();
+	protected final BooleanWritable messagesFlag = new BooleanWritable(false);
+
+	//PAYLOADS ALREADY TAKEN INTO ACCOUNT, KEPT OUTSIDE THE VERTEX VALUE
+	protected AnalyzedPayloads analyzedPayloads;
+	protected AnalyzedPayloads.PayloadSet analyzed;
+
+	//BARNES-HUT REPULSION
+	protected boolean useBarnesHut;
+	protected float theta;
+	protected WorkerQuadTree quadTree;
+	protected final IntArrayList quadTreeStack = new IntArrayList();
+	protected final float[] quadTreeTemp = new float[2];
+
+	//SAMPLED FLOODING
+	protected PayloadReservoir reservoir;
+	protected long sampledOut;
+	protected final float[] scaledForce = new float[2];
+
+	//HUB-AWARE PARALLEL ACCUMULATION
+	protected boolean parallelHubs;
+	protected HubForceAccumulator hubAccumulator;
+
+	//SENDER-SIDE DEDUPLICATION
+	protected MessageDeduplicator deduplicator;
+	protected long droppedMessages;
+	protected int messageSize;
+
+	//LOCAL COORDINATE TABLE
+	protected WorkerCoordinateTable coordinateTable;
+	protected int ttlmax;
+	protected int[] visitStamps = new int[0];
+	protected int visitStamp;
+	protected final IntArrayList visitQueue = new IntArrayList();
+	protected final IntArrayList visitDepths = new IntArrayList();
+	protected final LayeredPartitionedLongWritable tablePayload = new LayeredPartitionedLongWritable();
+	protected final LayoutMessage tableMessage = new LayoutMessage(tablePayload, new float[2]);
+	protected boolean remoteOnly;
+
+	//FUSED SEEDING
+	protected AbstractSeeder<V, E> fusedSeeder;
+	protected boolean seedNow;
+
+	//ROUND OF THE MESSAGES BEING PROCESSED
+	protected int propagationRound;
+
+	//DELTA BROADCASTS
+	protected CoordinateCache coordinateCache;
+	protected CoordinateCache.Entry cacheEntry;
+
+	//K-HOP NEIGHBOURHOOD INDEX
+	protected NeighbourhoodIndex index;
+	protected NeighbourhoodIndex.Entry indexEntry;
+	protected boolean recordingIndex;
+	protected boolean indexReady;
+
+	//PARTITION SUMMARIES, INDEXED BY COMPONENT
+	protected boolean usePartitionSummaries;
+	protected Int2ObjectOpenHashMap<IntArrayList> summariesByComponent;
+	protected short[] summaryPartition;
+	protected float[] summaryX;
+	protected float[] summaryY;
+	protected float[] summaryRadius;
+	protected int[] summaryCount;
+	protected int[] summaryWeight;
+
 	/* (non-Javadoc)
 	 * @see org.apache.giraph.graph.AbstractComputation#compute(org.apache.giraph.graph.Vertex, java.lang.Iterable)
 	 */
@@ -78,26 +193,51 @@ public class AbstractPropagator<V extends CoordinateWritable, E extends IntWrita
 		Iterator<LayoutMessage> it = messages.iterator();
 		CoordinateWritable vValue = vertex.getValue();
 
-		float[] mycoords = vValue.getCoordinates();;	
+		vValue.getCoordinates(mycoords);
 		float[] foreigncoords;
 
 		float distance;
 
-		float[] finalForce = new float[]{0.0f, 0.0f};
-		float[] repulsiveForce = new float[]{0.0f, 0.0f};
-		float[] tempForce = new float[]{0.0f, 0.0f};;
+		finalForce[0] = 0.0f;
+		finalForce[1] = 0.0f;
+		repulsiveForce[0] = 0.0f;
+		repulsiveForce[1] = 0.0f;
 
 		int v1Deg;
 		int v2Deg;		
 
 		v1Deg = /*vertex.getNumEdges() +*/ vValue.getWeight();
 
+		analyzed = analyzedPayloads.get(vertex.getId());
+		if(index != null)
+			indexEntry = index.get(vertex.getId());
+
+		//SILENT PAYLOADS, ONCE PER ROUND
+		if(coordinateCache != null){
+			cacheEntry = coordinateCache.get(vertex.getId());
+			if(vValue.hasBeenReset() && propagationRound > 1)
+				accumulateCachedPayloads(vertex, v1Deg);
+		}
+
+		//LOCAL REPULSIVE FORCES, ONCE PER ROUND
+		if(useBarnesHut && vValue.hasBeenReset())
+			quadTree.accumulateRepulsiveForce(vertex.getId().getId(), vValue.getComponent(), mycoords[0], mycoords[1], v1Deg,
+					force, theta, quadTreeStack, quadTreeTemp, repulsiveForce);
+
+		//FAR FIELD REPULSIVE FORCES, ONCE PER ROUND
+		if(usePartitionSummaries && vValue.hasBeenReset())
+			accumulatePartitionSummaries(vertex.getId().getPartition(), vValue.getComponent(), v1Deg);
+
+		//SAME-WORKER K-HOP NEIGHBOURS, ONCE PER ROUND
+		if(coordinateTable != null && !indexReady && vValue.hasBeenReset())
+			resolveLocalNeighbourhood(vertex, vValue, v1Deg);
+
 		while(it.hasNext()){	
 			LayoutMessage currentMessage = it.next();
 
 			LayeredPartitionedLongWritable currentPayload = currentMessage.getPayloadVertex();
 
-			if(currentPayload.equals(vertex.getId()) || vValue.isAnalyzed(new LongWritable(currentPayload.getId())))
+			if(currentPayload.equals(vertex.getId()) || analyzed.contains(currentPayload.getId()))
 				continue;
 			
 			foreigncoords = currentMessage.getValue();
@@ -106,46 +246,78 @@ public class AbstractPropagator<V extends CoordinateWritable, E extends IntWrita
 				log.info("Received coordinates " + foreigncoords[0] + " " + foreigncoords[1] + " from " + currentMessage.getPayloadVertex());
 			}
 
-			float squareDistance = Toolbox.squareModule(mycoords, foreigncoords);
-			distance = (float) Math.sqrt(squareDistance);
-
 			float deltaX = (foreigncoords[0] - mycoords[0]);
 			float deltaY = (foreigncoords[1] - mycoords[1]);		
 
 			v2Deg = currentMessage.getWeight();
+
+			if(recordingIndex)
+				indexEntry.add(currentPayload.getId(), currentPayload.getPartition(), ttlmax - currentMessage.getTTL());
+
+			boolean isAttractive = vValue.hasBeenReset() && (!indexReady || indexEntry.isNeighbour(currentPayload.getId()));
+			boolean isRepulsive = (!useBarnesHut || !quadTree.isLocal(currentPayload.getId())) &&
+					(!usePartitionSummaries || currentPayload.getPartition() == vertex.getId().getPartition());
+
+			if(cacheEntry != null)
+				refreshCachedPayload(vertex, currentMessage, v1Deg, isAttractive);
+
+			if(parallelHubs){
+				//FORCES ARE ACCUMULATED AFTER THE LOOP, POSSIBLY IN PARALLEL
+				hubAccumulator.add(deltaX, deltaY, isAttractive ? requestOptimalSpringLength(vertex, currentPayload) : 0.0f, v2Deg, isAttractive, isRepulsive,
+						currentMessage.getScale());
+				analyzed.add(currentPayload.getId());
+				if(!currentMessage.isAZombie())
+					forward(vertex, currentMessage);
+				continue;
+			}
+
+			float squareDistance = Toolbox.squareModule(mycoords, foreigncoords);
+			distance = (float) Math.sqrt(squareDistance);
 			
 			//ATTRACTIVE FORCES
-			if(vValue.hasBeenReset()){
-				tempForce = force.computeAttractiveForce(deltaX, deltaY, distance, squareDistance, requestOptimalSpringLength(vertex, currentPayload), v1Deg, v2Deg);				
-				finalForce[0] += tempForce[0];
-				finalForce[1] += tempForce[1];
+			if(isAttractive){
+				force.accumulateAttractiveForce(deltaX, deltaY, distance, squareDistance, requestOptimalSpringLength(vertex, currentPayload), v1Deg, v2Deg, finalForce);				
 				if(LayoutRoutine.logLayout)
 					log.info("computed attractive " + finalForce[0] + " " + finalForce[1] + " with data " + deltaX + " " + deltaY + " " + distance + " " + requestOptimalSpringLength(vertex, currentPayload));
 			}
 
 			//REPULSIVE FORCES
-			tempForce = force.computeRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg);
+			if(isRepulsive && currentMessage.getScale() == 1.0f)
+				force.accumulateRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg, repulsiveForce);
+			else if(isRepulsive){
+				scaledForce[0] = 0.0f;
+				scaledForce[1] = 0.0f;
+				force.accumulateRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg, scaledForce);
+				repulsiveForce[0] += currentMessage.getScale()*scaledForce[0];
+				repulsiveForce[1] += currentMessage.getScale()*scaledForce[1];
+			}
 			if(LayoutRoutine.logLayout)
-				log.info("computed repulsive " + tempForce[0] + " " + tempForce[1] + " with data " + deltaX + " " + deltaY + " " + distance);
-			
-			repulsiveForce[0] += (repulsiveForceEnhancer*tempForce[0]);
-			repulsiveForce[1] += (repulsiveForceEnhancer*tempForce[1]);
+				log.info("accumulated repulsive " + repulsiveForce[0] + " " + repulsiveForce[1] + " with data " + deltaX + " " + deltaY + " " + distance);
 
-			vValue.analyze(currentPayload.getId());
+			analyzed.add(currentPayload.getId());
 
-			if(!currentMessage.isAZombie()){
-				aggregate(LayoutRoutine.MessagesAggregatorString, new BooleanWritable(false));
-				sendMessageToAllEdges(vertex, (LayoutMessage) currentMessage.propagate());					
-			}
+			if(!currentMessage.isAZombie())
+				forward(vertex, currentMessage);
 
 		}
 
+		if(reservoir != null)
+			forwardSample(vertex);
+
+		if(parallelHubs)
+			hubAccumulator.accumulate(force, v1Deg, finalForce, repulsiveForce);
+
+		//REPULSIVE FORCE ENHANCEMENT
+		repulsiveForce[0] *= repulsiveForceEnhancer;
+		repulsiveForce[1] *= repulsiveForceEnhancer;
+
 		if(LayoutRoutine.logLayout)
 			log.info("Going to moderate on " + walshawConstant + " from " + repulsiveForce[0] + " " + repulsiveForce[1]);
 		
 		//REPULSIVE FORCE MODERATION
-		repulsiveForce[0] *= requestWalshawConstant();
-		repulsiveForce[1] *= requestWalshawConstant();
+		float moderation = requestWalshawConstant();
+		repulsiveForce[0] *= moderation;
+		repulsiveForce[1] *= moderation;
 
 		finalForce[0] -= repulsiveForce[0];
 		finalForce[1] -= repulsiveForce[1];
@@ -154,8 +326,223 @@ public class AbstractPropagator<V extends CoordinateWritable, E extends IntWrita
 			log.info("computed repulsive " + repulsiveForce[0] + " " + repulsiveForce[1] + " final " + finalForce[0] + " " + finalForce[1]);
 		
 		vValue.setAsMoving();
-		vValue.addToForceVector(finalForce);
+		vValue.addToForceVector(finalForce[0], finalForce[1]);
+
+		//FUSED SEEDING, ONCE THE LAST HOP OF THE ROUND HAS BEEN PROCESSED
+		if(seedNow)
+			fusedSeeder.compute(vertex, Collections.<LayoutMessage>emptyList());
+
+	}
+
+	/**
+	 * Accumulates the forces exerted by all the cached payloads, from their last known coordinates.
+	 */
+	protected void accumulateCachedPayloads(Vertex<LayeredPartitionedLongWritable, V, E> vertex, int v1Deg){
+		for(int slot=0; slot<cacheEntry.size(); slot++){
+			accumulateCachedPayload(vertex, slot, v1Deg, 1.0f);
+			cacheEntry.setAppliedRound(slot, propagationRound);
+		}
+	}
+
+	/**
+	 * Stores the fresh coordinates carried by the message; if the forces exerted by the payload were already computed from its
+	 * cached coordinates during this round, they are subtracted, since they are computed again from the message.
+	 */
+	protected void refreshCachedPayload(Vertex<LayeredPartitionedLongWritable, V, E> vertex, LayoutMessage message, int v1Deg, boolean isAttractive){
+		LayeredPartitionedLongWritable payload = message.getPayloadVertex();
+		int slot = cacheEntry.slotOf(payload.getId());
+		if(slot != -1 && cacheEntry.getAppliedRound(slot) == propagationRound){
+			accumulateCachedPayload(vertex, slot, v1Deg, -1.0f);
+			cacheEntry.setAppliedRound(slot, -1);
+		}
+		cacheEntry.store(payload.getId(), payload.getPartition(), message.getValue()[0], message.getValue()[1], message.getWeight(),
+				message.getScale(), isAttractive);
+	}
+
+	/**
+	 * Adds the forces exerted by a cached payload, multiplied by the given sign, to the force accumulators.
+	 */
+	protected void accumulateCachedPayload(Vertex<LayeredPartitionedLongWritable, V, E> vertex, int slot, int v1Deg, float sign){
+		float deltaX = cacheEntry.getX(slot) - mycoords[0];
+		float deltaY = cacheEntry.getY(slot) - mycoords[1];
+		float squareDistance = deltaX*deltaX + deltaY*deltaY;
+		float distance = (float) Math.sqrt(squareDistance);
+		int v2Deg = cacheEntry.getWeight(slot);
+		long payloadId = cacheEntry.getId(slot);
+		if(cacheEntry.isAttractive(slot)){
+			tablePayload.setId(payloadId);
+			tablePayload.setPartition(cacheEntry.getPartition(slot));
+			tablePayload.setLayer(vertex.getId().getLayer());
+			scaledForce[0] = 0.0f;
+			scaledForce[1] = 0.0f;
+			force.accumulateAttractiveForce(deltaX, deltaY, distance, squareDistance, requestOptimalSpringLength(vertex, tablePayload), v1Deg, v2Deg, scaledForce);
+			finalForce[0] += sign*scaledForce[0];
+			finalForce[1] += sign*scaledForce[1];
+		}
+		if((!useBarnesHut || !quadTree.isLocal(payloadId)) &&
+				(!usePartitionSummaries || cacheEntry.getPartition(slot) == vertex.getId().getPartition())){
+			scaledForce[0] = 0.0f;
+			scaledForce[1] = 0.0f;
+			force.accumulateRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg, scaledForce);
+			float scale = sign*cacheEntry.getScale(slot);
+			repulsiveForce[0] += scale*scaledForce[0];
+			repulsiveForce[1] += scale*scaledForce[1];
+		}
+	}
+
+	/**
+	 * Propagates the message to the neighbours or, when the sampled flooding is active, offers it to the sample.
+	 */
+	protected void forward(Vertex<LayeredPartitionedLongWritable, V, E> vertex, LayoutMessage message){
+		if(reservoir != null){
+			reservoir.offer(message);
+			return;
+		}
+		aggregate(LayoutRoutine.MessagesAggregatorString, messagesFlag);
+		sendMessageToAllEdges(vertex, message.propagateInto(propagatedMessage));
+	}
 
+	/**
+	 * Propagates the payloads sampled for the vertex.
+	 */
+	protected void forwardSample(Vertex<LayeredPartitionedLongWritable, V, E> vertex){
+		int sampled = reservoir.close();
+		sampledOut += reservoir.droppedPayloads();
+		if(sampled > 0)
+			aggregate(LayoutRoutine.MessagesAggregatorString, messagesFlag);
+		for(int i=0; i<sampled; i++)
+			sendMessageToAllEdges(vertex, reservoir.get(i));
+		reservoir.clear();
+	}
+
+	/**
+	 * Visits the local coordinate table breadth-first from the given vertex, up to the maximum TTL, and accumulates the forces
+	 * exerted by the vertices found: attractive and repulsive for the neighbours, repulsive only for the others. Each vertex found
+	 * is marked as analyzed and, if its message would still be alive at this distance, it is sent to the neighbours hosted on other
+	 * workers with the TTL it would have had.
+	 */
+	protected void resolveLocalNeighbourhood(Vertex<LayeredPartitionedLongWritable, V, E> vertex, CoordinateWritable vValue, int v1Deg){
+		int source = coordinateTable.indexOf(vertex.getId().getId());
+		if(source == -1)
+			return;
+		if(visitStamps.length < coordinateTable.size()){
+			visitStamps = new int[coordinateTable.size()];
+			visitStamp = 0;
+		}
+		visitStamp++;
+		visitStamps[source] = visitStamp;
+		visitQueue.clear();
+		visitDepths.clear();
+		visitQueue.add(source);
+		visitDepths.add(0);
+		boolean sendToRemotes = coordinateTable.hasRemoteNeighbours(source);
+		boolean sent = false;
+		for(int head=0; head<visitQueue.size(); head++){
+			int current = visitQueue.getInt(head);
+			int distance = visitDepths.getInt(head) + 1;
+			for(int j=coordinateTable.getNeighbourStart(current); j<coordinateTable.getNeighbourEnd(current); j++){
+				int found = coordinateTable.getNeighbour(j);
+				if(visitStamps[found] == visitStamp)
+					continue;
+				visitStamps[found] = visitStamp;
+				long foundId = coordinateTable.getId(found);
+				tablePayload.setId(foundId);
+				tablePayload.setPartition(coordinateTable.getPartition(found));
+				tablePayload.setLayer(coordinateTable.getLayer(found));
+
+				float deltaX = coordinateTable.getX(found) - mycoords[0];
+				float deltaY = coordinateTable.getY(found) - mycoords[1];
+				float squareDistance = deltaX*deltaX + deltaY*deltaY;
+				float currentDistance = (float) Math.sqrt(squareDistance);
+				int v2Deg = coordinateTable.getWeight(found);
+				if(distance == 1)
+					force.accumulateAttractiveForce(deltaX, deltaY, currentDistance, squareDistance, requestOptimalSpringLength(vertex, tablePayload), v1Deg, v2Deg, finalForce);
+				if((!useBarnesHut || !quadTree.isLocal(foundId)) &&
+						(!usePartitionSummaries || tablePayload.getPartition() == vertex.getId().getPartition()))
+					force.accumulateRepulsiveForce(deltaX, deltaY, currentDistance, squareDistance, v1Deg, v2Deg, repulsiveForce);
+				analyzed.add(foundId);
+				if(recordingIndex)
+					indexEntry.add(foundId, tablePayload.getPartition(), distance);
+
+				if(distance < ttlmax){
+					if(sendToRemotes){
+						tableMessage.setTTL(ttlmax - distance - 1);
+						tableMessage.getValue()[0] = coordinateTable.getX(found);
+						tableMessage.getValue()[1] = coordinateTable.getY(found);
+						tableMessage.setWeight(v2Deg);
+						remoteOnly = true;
+						sendMessageToAllEdges(vertex, tableMessage);
+						remoteOnly = false;
+						sent = true;
+					}
+					visitQueue.add(found);
+					visitDepths.add(distance);
+				}
+			}
+		}
+		if(sent)
+			aggregate(LayoutRoutine.MessagesAggregatorString, messagesFlag);
+	}
+
+	/**
+	 * Accumulates the repulsive forces exerted by the summaries of the other partitions of the component. Partitions hosted on
+	 * this worker are skipped when the Barnes-Hut repulsion is active, since the quadtree already accounts for them. The distance
+	 * from a summary is never taken lower than the half diagonal of its bounding box, to avoid exploding forces when the vertex
+	 * lies inside it.
+	 */
+	protected void accumulatePartitionSummaries(short partition, int component, int v1Deg){
+		IntArrayList indices = summariesByComponent.get(component);
+		if(indices == null)
+			return;
+		for(int j=0; j<indices.size(); j++){
+			int i = indices.getInt(j);
+			if(summaryPartition[i] == partition || (useBarnesHut && quadTree.hostsPartition(summaryPartition[i])))
+				continue;
+			float deltaX = summaryX[i] - mycoords[0];
+			float deltaY = summaryY[i] - mycoords[1];
+			float squareDistance = Math.max(deltaX*deltaX + deltaY*deltaY, summaryRadius[i]*summaryRadius[i]);
+			WorkerQuadTree.accumulateScaled(deltaX, deltaY, squareDistance, v1Deg, summaryWeight[i], summaryCount[i], force, quadTreeTemp, repulsiveForce);
+		}
+	}
+
+	/**
+	 * Unpacks the aggregated partition summaries into primitive arrays grouped by component.
+	 */
+	protected void loadPartitionSummaries(MapWritable summaries){
+		int size = summaries.size();
+		summariesByComponent = new Int2ObjectOpenHashMap<IntArrayList>();
+		summaryPartition = new short[size];
+		summaryX = new float[size];
+		summaryY = new float[size];
+		summaryRadius = new float[size];
+		summaryCount = new int[size];
+		summaryWeight = new int[size];
+		int i = 0;
+		for(Entry<Writable, Writable> current : summaries.entrySet()){
+			PartitionedLongWritable key = (PartitionedLongWritable) current.getKey();
+			PartitionSummaryWritable summary = (PartitionSummaryWritable) current.getValue();
+			summaryPartition[i] = key.getPartition();
+			summaryX[i] = summary.getCentreX();
+			summaryY[i] = summary.getCentreY();
+			summaryRadius[i] = summary.getDiagonal()/2;
+			summaryCount[i] = summary.getCount();
+			summaryWeight[i] = Math.max(1, Math.round(summary.getWeight()/(float)summary.getCount()));
+			IntArrayList indices = summariesByComponent.get((int) key.getId());
+			if(indices == null){
+				indices = new IntArrayList();
+				summariesByComponent.put((int) key.getId(), indices);
+			}
+			indices.add(i);
+			i++;
+		}
+	}
+
+	/**
+	 * Returns the seeder to run in the same superstep as the propagation when the master flags a seeding superstep, or null if
+	 * seeding and propagation are not fused.
+	 */
+	protected AbstractSeeder<V, E> createFusedSeeder(){
+		return null;
 	}
 
 	/**
@@ -184,6 +571,8 @@ public class AbstractPropagator<V extends CoordinateWritable, E extends IntWrita
 		k = ((FloatWritable)getAggregatedValue(LayoutRoutine.k_agg)).get();
 		walshawConstant = ((FloatWritable)getAggregatedValue(LayoutRoutine.walshawConstant_agg)).get();
 		repulsiveForceEnhancer = getConf().getFloat(LayoutRoutine.repulsiveForceEnhancerString, LayoutRoutine.repulsiveForceEnhancementDefault);
+		LayoutMessage.setCodec(getConf().getBoolean(LayoutRoutine.compactMessagesString, false),
+				getConf().getBoolean(LayoutRoutine.quantizedMessagesString, false));
 
 		try {
 			force = ((Class<Force>)Class.forName(getConf().get(LayoutRoutine.forceMethodOptionString, FR.class.toString()))).newInstance();
@@ -191,6 +580,137 @@ public class AbstractPropagator<V extends CoordinateWritable, E extends IntWrita
 			force = new FR();
 		}
 		force.generateForce(getConf().getStrings(LayoutRoutine.forceMethodOptionExtraOptionsString, ""));
+
+		LayoutWorkerContext context = LayoutWorkerContext.of(workerContext);
+		analyzedPayloads = context.getAnalyzedPayloads();
+
+		useBarnesHut = getConf().getBoolean(LayoutRoutine.barnesHutString, false);
+		theta = getConf().getFloat(LayoutRoutine.barnesHutThetaString, LayoutRoutine.barnesHutThetaDefault);
+		quadTree = context.getQuadTree();
+
+		parallelHubs = getConf().getBoolean(LayoutRoutine.parallelHubsString, false);
+		if(parallelHubs)
+			hubAccumulator = new HubForceAccumulator(getConf().getInt(LayoutRoutine.hubThresholdString, LayoutRoutine.hubThresholdDefault),
+					getConf().getInt(LayoutRoutine.hubParallelismString, Runtime.getRuntime().availableProcessors()));
+
+		deduplicator = context.getDeduplicator();
+		droppedMessages = 0;
+		messageSize = 0;
+
+		int sampleBudget = getConf().getInt(LayoutRoutine.sampleBudgetString, LayoutRoutine.sampleBudgetDefault);
+		if(sampleBudget > 0)
+			reservoir = new PayloadReservoir(sampleBudget);
+		sampledOut = 0;
+
+		ttlmax = ((IntWritable)getAggregatedValue(LayoutRoutine.ttlMaxAggregator)).get();
+		coordinateTable = context.getCoordinateTable();
+
+		usePartitionSummaries = getConf().getBoolean(LayoutRoutine.partitionSummariesString, false);
+		if(usePartitionSummaries)
+			loadPartitionSummaries((MapWritable) getAggregatedValue(LayoutRoutine.partitionSummariesAggregator));
+
+		fusedSeeder = createFusedSeeder();
+		if(fusedSeeder != null){
+			seedNow = ((BooleanWritable)getAggregatedValue(LayoutRoutine.fusedSeedAggregator)).get();
+			fusedSeeder.setConf(getConf());
+			fusedSeeder.initialize(graphState, workerClientRequestProcessor, graphTaskManager, workerGlobalCommUsage, workerContext);
+		}
+
+		//THE MESSAGES PROCESSED IN A SEEDING SUPERSTEP BELONG TO THE ROUND BEFORE THE ONE BEING SEEDED
+		propagationRound = ((IntWritable)getAggregatedValue(LayoutRoutine.layoutRoundAggregator)).get() - (seedNow ? 1 : 0);
+		index = context.getIndex();
+		if(index != null){
+			recordingIndex = propagationRound <= 1;
+			indexReady = !recordingIndex;
+		}
+		coordinateCache = context.getCoordinateCache();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#preSuperstep()
+	 */
+	@Override
+	public void preSuperstep() {
+		super.preSuperstep();
+		if(useBarnesHut)
+			quadTree.build(getSuperstep());
+		if(deduplicator != null)
+			deduplicator.beginSuperstep(getSuperstep());
+		if(coordinateTable != null)
+			coordinateTable.build(getSuperstep());
+		if(seedNow)
+			fusedSeeder.preSuperstep();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#postSuperstep()
+	 */
+	@Override
+	public void postSuperstep() {
+		super.postSuperstep();
+		if(seedNow)
+			fusedSeeder.postSuperstep();
+		if(droppedMessages > 0){
+			getContext().getCounter(LayoutRoutine.COUNTER_GROUP, "Deduplicated messages").increment(droppedMessages);
+			getContext().getCounter(LayoutRoutine.COUNTER_GROUP, "Deduplicated bytes").increment(droppedMessages*messageSize);
+		}
+		if(sampledOut > 0)
+			getContext().getCounter(LayoutRoutine.COUNTER_GROUP, "Sampled out payloads").increment(sampledOut);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#sendMessageToAllEdges(org.apache.giraph.graph.Vertex, org.apache.hadoop.io.Writable)
+	 */
+	@Override
+	public void sendMessageToAllEdges(Vertex<LayeredPartitionedLongWritable, V, E> vertex, LayoutMessage message) {
+		if(deduplicator == null && coordinateTable == null){
+			super.sendMessageToAllEdges(vertex, message);
+			messageSent(message, vertex.getNumEdges());
+			return;
+		}
+		for(Edge<LayeredPartitionedLongWritable, E> edge : vertex.getEdges())
+			sendMessage(edge.getTargetVertexId(), message);
+	}
+
+	/**
+	 * When the deduplication is active, drops the message if it targets its own payload vertex or if the same payload has already been
+	 * sent to the same target during this superstep. Messages built from the local coordinate table are only sent to the vertices
+	 * hosted on other workers.
+	 * 
+	 * @see org.apache.giraph.graph.AbstractComputation#sendMessage(org.apache.hadoop.io.WritableComparable, org.apache.hadoop.io.Writable)
+	 */
+	@Override
+	public void sendMessage(LayeredPartitionedLongWritable id, LayoutMessage message) {
+		if(remoteOnly && coordinateTable.isLocal(id))
+			return;
+		if(deduplicator != null){
+			long payload = message.getPayloadVertex().getId();
+			if(id.getId() == payload || !deduplicator.firstTime(id.getId(), payload)){
+				if(messageSize == 0)
+					messageSize = serializedSize(message);
+				droppedMessages++;
+				return;
+			}
+		}
+		super.sendMessage(id, message);
+		messageSent(message, 1);
+	}
+
+	/**
+	 * Called for each message actually sent, i.e. not dropped by {@link #sendMessage(LayeredPartitionedLongWritable, LayoutMessage)},
+	 * with the number of its recipients.
+	 */
+	protected void messageSent(LayoutMessage message, int recipientsNo){
+	}
+
+	private int serializedSize(LayoutMessage message){
+		DataOutputBuffer buffer = new DataOutputBuffer();
+		try {
+			message.write(buffer);
+		} catch (IOException e) {
+			return 0;
+		}
+		return buffer.getLength();
 	}
 
 }
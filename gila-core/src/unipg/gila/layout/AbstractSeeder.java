@@ -18,9 +18,14 @@
  */
 package unipg.gila.layout;
 
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
 
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
+import org.apache.giraph.edge.Edge;
 import org.apache.giraph.graph.AbstractComputation;
 import org.apache.giraph.graph.GraphState;
 import org.apache.giraph.graph.GraphTaskManager;
@@ -36,8 +41,12 @@ import org.apache.log4j.Logger;
 
 import unipg.gila.common.coordinatewritables.CoordinateWritable;
 import unipg.gila.common.datastructures.FloatWritableArray;
+import unipg.gila.common.datastructures.LongWritableArray;
+import unipg.gila.common.datastructures.PartitionSummaryWritable;
+import unipg.gila.common.datastructures.PartitionedLongWritable;
 import unipg.gila.common.datastructures.messagetypes.LayoutMessage;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+import unipg.gila.coolingstrategies.CoolingStrategy;
 import unipg.gila.utils.Toolbox;
 
 /**
@@ -47,6 +56,15 @@ import unipg.gila.utils.Toolbox;
  * = At every other superstep each vertex moderates the force vector acting on it and notifies if it moves less than the defined threshold set using "layout.accuracy" and 
  * then broadcasts its updated coordinates.
  * 
+ * When the local coordinate table is active ("layout.flooding.localTable"), each vertex also publishes its coordinates and its
+ * neighbours to the worker table, and the coordinates are only sent to the neighbours hosted on other workers.
+ * 
+ * When the delta broadcasts are active ("layout.flooding.delta"), from the second round of a layout pass on a vertex only sends its
+ * coordinates if it moved farther than "layout.flooding.delta.epsilon" (by default the current accuracy) since its last send.
+ * 
+ * When the neighbourhood index is active ("layout.flooding.index"), the coordinates are flooded only during the first round of a
+ * layout pass; in the following rounds they are sent with a single multicast to the vertices recorded in the index.
+ * 
  * 
  * @author Alessio Arleo
  *
@@ -58,11 +76,47 @@ public abstract class AbstractSeeder<V extends CoordinateWritable, E extends Int
 	float accuracy;
 	int ttlmax;
 	
-	MapWritable tempsMap;
-	MapWritable sizesMap;
+	//DENSE PER-COMPONENT TABLES, SEE ComponentTables
+	long[] componentIds;
+	float[] temps;
+	float[] sizes;
 	
 	boolean sendDegToo;
 	
+	protected CoolingStrategy coolingStrategy;
+	protected AnalyzedPayloads analyzedPayloads;
+	
+	//BARNES-HUT POSITIONS, PUBLISHED TO THE WORKER QUADTREE AT THE END OF THE SUPERSTEP
+	protected boolean useBarnesHut;
+	protected WorkerQuadTree quadTree;
+	protected WorkerQuadTree.PositionBuffer positions;
+	
+	//LOCAL COORDINATE TABLE, PUBLISHED AT THE END OF THE SUPERSTEP
+	protected WorkerCoordinateTable coordinateTable;
+	protected WorkerCoordinateTable.CoordinateBuffer coordinateBuffer;
+	
+	//K-HOP NEIGHBOURHOOD INDEX
+	protected NeighbourhoodIndex index;
+	protected int layoutRound;
+	
+	//DELTA BROADCASTS
+	protected CoordinateCache coordinateCache;
+	protected float deltaEpsilon;
+	protected long silentVertices;
+	
+	//PARTITION SUMMARIES, KEYED BY (PARTITION, COMPONENT) AND AGGREGATED ONCE PER THREAD
+	protected boolean usePartitionSummaries;
+	protected Object2ObjectOpenHashMap<PartitionedLongWritable, PartitionSummaryWritable> summaries;
+	protected final PartitionedLongWritable summaryProbe = new PartitionedLongWritable();
+	
+	//REUSABLE BUFFERS, SO THAT NO OBJECT IS CREATED FOR EACH VERTEX
+	protected final float[] coords = new float[2];
+	protected final float[] forces = new float[2];
+	protected final LongWritable convergedVertex = new LongWritable(1);
+	protected final LayoutMessage seedMessage = new LayoutMessage();
+	protected final BooleanWritable messagesFlag = new BooleanWritable(false);
+	protected final RecipientCounter recipients = new RecipientCounter();
+	
 	//LOGGER
 	Logger log = Logger.getLogger(AbstractSeeder.class);
 	
@@ -77,15 +131,18 @@ public abstract class AbstractSeeder<V extends CoordinateWritable, E extends Int
 		if(getSuperstep() == 0){ //FIRST SUPERSTEP, EACH VERTEX BROADCASTS ITS COORDINATES TO ITS NEIGHBOR.
 			aggregate(LayoutRoutine.maxOneDegAggregatorString, new IntWritable(vValue.getOneDegreeVerticesQuantity()));
 			
-			gatherAndSend(vertex, vValue.getCoordinates());
+			vValue.getCoordinates(coords);
+			gatherAndSend(vertex, coords);
+			publishPosition(vertex, coords);
 			vValue.resetAnalyzed();
+			analyzedPayloads.reset(vertex.getId());
 			return;
 		}
 
 		int component = vValue.getComponent();
 		
-		float coords[] = vValue.getCoordinates();	
-		float[] forces = vValue.getForceVector();
+		vValue.getCoordinates(coords);
+		vValue.getForceVector(forces);
 		
 		float displacementModule = Toolbox.computeModule(forces);
 		float correctedDispModule;
@@ -95,17 +152,18 @@ public abstract class AbstractSeeder<V extends CoordinateWritable, E extends Int
 			float tempX;
 			float tempY;
 			
-			float[] temps = ((FloatWritableArray)tempsMap.get(new IntWritable(component))).get();
+			int x = ComponentTables.index(componentIds, component)*2;
+			float stepFactor = coolingStrategy.vertexStepFactor(vValue, displacementModule*displacementModule);
 
-			tempX = (forces[0] / displacementModule * Math.min(displacementModule, temps[0]));
-			tempY = (forces[1] / displacementModule * Math.min(displacementModule, temps[1]));
+			tempX = (forces[0] / displacementModule * Math.min(displacementModule, temps[x]*stepFactor));
+			tempY = (forces[1] / displacementModule * Math.min(displacementModule, temps[x + 1]*stepFactor));
 
 			coords[0] += tempX;
 			coords[1] += tempY;		
 
 			vValue.setCoordinates(coords[0], coords[1]);
 
-			correctedDispModule = Toolbox.computeModule(new float[]{tempX, tempY});
+			correctedDispModule = Toolbox.floatFuzzyMath((float) Math.sqrt(tempX*tempX + tempY*tempY));
 
 			
 		}else
@@ -113,20 +171,71 @@ public abstract class AbstractSeeder<V extends CoordinateWritable, E extends Int
 		if(LayoutRoutine.logLayout)
 			log.info("Seeder here, displacement for vertex :" + vertex.getId() + " " + correctedDispModule );
 		if(correctedDispModule < accuracy)// || LayoutRoutine.relativeSupersteps > LayoutRoutine.maxSuperstep)
-			aggregate(LayoutRoutine.convergenceAggregatorString, new LongWritable(1));
+			aggregate(LayoutRoutine.convergenceAggregatorString, convergedVertex);
 		if(vertex.getNumEdges() > 0)
 			gatherAndSend(vertex, coords);
+		publishPosition(vertex, coords);
 		vValue.resetAnalyzed();
+		analyzedPayloads.reset(vertex.getId());
+	}
+
+	/**
+	 * When the Barnes-Hut repulsion is active, stores the updated position of the vertex so that it can be inserted
+	 * into the worker quadtree; when the partition summaries are active, adds the vertex to the summary of its partition.
+	 */
+	protected void publishPosition(Vertex<LayeredPartitionedLongWritable, V, E> vertex, float[] coords){
+		if(useBarnesHut)
+			positions.add(vertex.getId().getId(), vertex.getId().getPartition(), vertex.getValue().getComponent(), coords[0], coords[1], vertex.getValue().getWeight());
+		if(coordinateTable != null){
+			coordinateBuffer.add(vertex.getId().getId(), vertex.getId().getPartition(), vertex.getId().getLayer(), coords[0], coords[1], vertex.getValue().getWeight());
+			for(Edge<LayeredPartitionedLongWritable, E> edge : vertex.getEdges())
+				if(isFloodable(edge.getTargetVertexId()))
+					coordinateBuffer.addNeighbour(edge.getTargetVertexId().getId());
+		}
+		if(usePartitionSummaries){
+			summaryProbe.setPartition(vertex.getId().getPartition());
+			summaryProbe.setId(vertex.getValue().getComponent());
+			PartitionSummaryWritable summary = summaries.get(summaryProbe);
+			if(summary == null){
+				summary = new PartitionSummaryWritable();
+				summaries.put(summaryProbe.copy(), summary);
+			}
+			summary.add(coords[0], coords[1], vertex.getValue().getWeight());
+		}
+	}
+
+	/**
+	 * Returns true if the coordinates are flooded towards the given neighbour.
+	 */
+	protected boolean isFloodable(LayeredPartitionedLongWritable target){
+		return true;
 	}
 
 	protected void gatherAndSend(Vertex<LayeredPartitionedLongWritable, V, E> vertex, float[] coords){
-		LayoutMessage toSend = new LayoutMessage();
+		if(coordinateCache != null){
+			CoordinateCache.Entry entry = coordinateCache.get(vertex.getId());
+			if(layoutRound <= 1)
+				entry.clear();
+			else if(!entry.hasMoved(coords[0], coords[1], deltaEpsilon)){ //THE RECEIVERS USE THE CACHED COORDINATES
+				silentVertices++;
+				return;
+			}
+			entry.sent(coords[0], coords[1]);
+		}
+		LayoutMessage toSend = seedMessage;
 		toSend.setPayloadVertex(vertex.getId());
-		toSend.setTTL(ttlmax - 1);
 		toSend.setValue(coords);
 		toSend.setWeight(vertex.getValue().getWeight());
-		sendMessageToAllEdges(vertex, toSend);	
-		aggregate(LayoutRoutine.MessagesAggregatorString, new BooleanWritable(false));
+		if(index != null && layoutRound > 1){ //THE INDEX IS READY, EVERY RECORDED VERTEX IS REACHED IN ONE HOP
+			toSend.setTTL(0);
+			sendMessageToMultipleEdges(index.get(vertex.getId()).targets(vertex.getId().getLayer()), toSend);
+		}else{
+			if(index != null)
+				index.get(vertex.getId()).clear();
+			toSend.setTTL(ttlmax - 1);
+			sendMessageToAllEdges(vertex, toSend);
+		}
+		aggregate(LayoutRoutine.MessagesAggregatorString, messagesFlag);
 	}
 	
 	/* (non-Javadoc)
@@ -144,10 +253,143 @@ public abstract class AbstractSeeder<V extends CoordinateWritable, E extends Int
 		accuracy = ((FloatWritable)getAggregatedValue(LayoutRoutine.currentAccuracyAggregator)).get();
 		ttlmax = ((IntWritable)getAggregatedValue(LayoutRoutine.ttlMaxAggregator)).get();		
 
-		tempsMap = getAggregatedValue(LayoutRoutine.tempAGG);
-		sizesMap = getAggregatedValue(LayoutRoutine.correctedSizeAGG);
+		componentIds = ((LongWritableArray)getAggregatedValue(LayoutRoutine.componentIdsAggregator)).get();
+		temps = ((FloatWritableArray)getAggregatedValue(LayoutRoutine.tempAGG)).get();
+		sizes = ((FloatWritableArray)getAggregatedValue(LayoutRoutine.correctedSizeAGG)).get();
 		
 		sendDegToo = getConf().getBoolean(LayoutRoutine.sendDegTooOptionString, false);
+		LayoutMessage.setCodec(getConf().getBoolean(LayoutRoutine.compactMessagesString, false),
+				getConf().getBoolean(LayoutRoutine.quantizedMessagesString, false));
+		coolingStrategy = LayoutRoutine.createCoolingStrategy(getConf(), ((FloatWritable)getAggregatedValue(LayoutRoutine.coolingSpeedAggregator)).get());
+		
+		LayoutWorkerContext context = LayoutWorkerContext.of(workerContext);
+		analyzedPayloads = context.getAnalyzedPayloads();
+		
+		useBarnesHut = getConf().getBoolean(LayoutRoutine.barnesHutString, false);
+		if(useBarnesHut){
+			quadTree = context.getQuadTree();
+			positions = new WorkerQuadTree.PositionBuffer();
+		}
+		coordinateTable = context.getCoordinateTable();
+		if(coordinateTable != null)
+			coordinateBuffer = new WorkerCoordinateTable.CoordinateBuffer();
+		usePartitionSummaries = getConf().getBoolean(LayoutRoutine.partitionSummariesString, false);
+		if(usePartitionSummaries)
+			summaries = new Object2ObjectOpenHashMap<PartitionedLongWritable, PartitionSummaryWritable>();
+		layoutRound = ((IntWritable)getAggregatedValue(LayoutRoutine.layoutRoundAggregator)).get();
+		index = context.getIndex();
+		coordinateCache = context.getCoordinateCache();
+		if(coordinateCache != null){
+			deltaEpsilon = getConf().getFloat(LayoutRoutine.deltaEpsilonString, accuracy);
+		}
+		silentVertices = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#preSuperstep()
+	 */
+	@Override
+	public void preSuperstep() {
+		super.preSuperstep();
+		if(useBarnesHut)
+			quadTree.beginRound(getSuperstep());
+		if(coordinateTable != null)
+			coordinateTable.beginRound(getSuperstep());
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#postSuperstep()
+	 */
+	@Override
+	public void postSuperstep() {
+		super.postSuperstep();
+		if(useBarnesHut)
+			quadTree.publish(positions);
+		if(coordinateTable != null)
+			coordinateTable.publish(coordinateBuffer);
+		if(usePartitionSummaries && !summaries.isEmpty()){
+			MapWritable toAggregate = new MapWritable();
+			for(Entry<PartitionedLongWritable, PartitionSummaryWritable> current : summaries.entrySet())
+				toAggregate.put(current.getKey(), current.getValue());
+			aggregate(LayoutRoutine.partitionSummariesAggregator, toAggregate);
+		}
+		if(silentVertices > 0)
+			getContext().getCounter(LayoutRoutine.COUNTER_GROUP, "Silent vertices").increment(silentVertices);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#sendMessageToAllEdges(org.apache.giraph.graph.Vertex, org.apache.hadoop.io.Writable)
+	 */
+	@Override
+	public void sendMessageToAllEdges(Vertex<LayeredPartitionedLongWritable, V, E> vertex, LayoutMessage message) {
+		if(coordinateTable == null){
+			super.sendMessageToAllEdges(vertex, message);
+			messageSent(message, vertex.getNumEdges());
+			return;
+		}
+		for(Edge<LayeredPartitionedLongWritable, E> edge : vertex.getEdges())
+			sendMessage(edge.getTargetVertexId(), message);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#sendMessageToMultipleEdges(java.util.Iterator, org.apache.hadoop.io.Writable)
+	 */
+	@Override
+	public void sendMessageToMultipleEdges(Iterator<LayeredPartitionedLongWritable> vertexIdIterator, LayoutMessage message) {
+		recipients.reset(vertexIdIterator);
+		super.sendMessageToMultipleEdges(recipients, message);
+		messageSent(message, recipients.count);
+	}
+
+	/**
+	 * When the local coordinate table is active, the neighbours hosted on this worker are skipped, since the propagators
+	 * read the coordinates from the table.
+	 * 
+	 * @see org.apache.giraph.graph.AbstractComputation#sendMessage(org.apache.hadoop.io.WritableComparable, org.apache.hadoop.io.Writable)
+	 */
+	@Override
+	public void sendMessage(LayeredPartitionedLongWritable id, LayoutMessage message) {
+		if(coordinateTable != null && coordinateTable.isLocal(id))
+			return;
+		super.sendMessage(id, message);
+		messageSent(message, 1);
+	}
+
+	/**
+	 * Called for each message actually sent, i.e. not dropped by {@link #sendMessage(LayeredPartitionedLongWritable, LayoutMessage)},
+	 * with the number of its recipients.
+	 */
+	protected void messageSent(LayoutMessage message, int recipientsNo){
+	}
+
+	/**
+	 * Counts the ids returned by the wrapped iterator; it is reused across sends.
+	 */
+	protected static class RecipientCounter implements Iterator<LayeredPartitionedLongWritable> {
+
+		private Iterator<LayeredPartitionedLongWritable> wrapped;
+		private int count;
+
+		private void reset(Iterator<LayeredPartitionedLongWritable> wrapped){
+			this.wrapped = wrapped;
+			count = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return wrapped.hasNext();
+		}
+
+		@Override
+		public LayeredPartitionedLongWritable next() {
+			count++;
+			return wrapped.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 
 }
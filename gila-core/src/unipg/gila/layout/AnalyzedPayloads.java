@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This class keeps, for each vertex hosted on the worker, the ids of the payloads already taken into account during the current
+ * drawing round. The sets are not part of the vertex value, so they are neither serialized nor checkpointed; each set is a primitive
+ * open-addressing set which is turned into a Bloom filter of "layout.analyzed.bloomBits" bits once it holds more than
+ * "layout.analyzed.hubThreshold" ids (0 disables the Bloom filters). The set of a vertex is cleared when the vertex is seeded,
+ * so that its memory is reused across rounds; after a round in which it was turned into a Bloom filter or held more than
+ * {@link PayloadSet#trimSize} ids it is shrunk, so that hubs do not keep their peak memory. The sets are held in a
+ * {@link StripedVertexStore}.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class AnalyzedPayloads extends StripedVertexStore<AnalyzedPayloads.PayloadSet> {
+
+	private final int hubThreshold;
+	private final int bloomBits;
+
+	protected AnalyzedPayloads(int hubThreshold, int bloomBits){
+		this.hubThreshold = hubThreshold;
+		this.bloomBits = Math.max(64, bloomBits);
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.StripedVertexStore#create()
+	 */
+	@Override
+	protected PayloadSet create() {
+		return new PayloadSet(hubThreshold, bloomBits);
+	}
+
+	/**
+	 * Clears the set of the given vertex, at the beginning of a new round.
+	 *
+	 * @param vertexId The id of the vertex.
+	 */
+	public void reset(LayeredPartitionedLongWritable vertexId){
+		get(vertexId).clear();
+	}
+
+	/**
+	 * The set of the payloads analyzed by a vertex.
+	 */
+	public static class PayloadSet {
+
+		protected static final int bloomHashes = 3;
+		protected static final int trimSize = 1024;
+
+		private final int hubThreshold;
+		private final int bloomBits;
+		private final LongOpenHashSet exact = new LongOpenHashSet();
+		private long[] bloom;
+		private boolean bloomInUse;
+
+		protected PayloadSet(int hubThreshold, int bloomBits){
+			this.hubThreshold = hubThreshold;
+			this.bloomBits = bloomBits;
+		}
+
+		protected void clear(){
+			if(bloomInUse){ //THE VERTEX WAS A HUB IN THIS ROUND, THE FILTER IS RELEASED
+				bloom = null;
+				bloomInUse = false;
+			}
+			int size = exact.size();
+			exact.clear();
+			if(size > trimSize)
+				exact.trim(trimSize);
+		}
+
+		public boolean contains(long id){
+			if(bloomInUse)
+				return bloomContains(id);
+			return exact.contains(id);
+		}
+
+		public void add(long id){
+			if(bloomInUse){
+				bloomAdd(id);
+				return;
+			}
+			exact.add(id);
+			if(hubThreshold > 0 && exact.size() > hubThreshold){
+				bloom = new long[(bloomBits + 63)/64];
+				for(long current : exact)
+					bloomAdd(current);
+				exact.clear();
+				exact.trim(16);
+				bloomInUse = true;
+			}
+		}
+
+		private void bloomAdd(long id){
+			long hash = id;
+			for(int i=0; i<bloomHashes; i++){
+				hash = HashCommon.murmurHash3(hash);
+				long bit = (hash & Long.MAX_VALUE) % bloomBits;
+				bloom[(int) (bit >>> 6)] |= 1L << (bit & 63);
+			}
+		}
+
+		private boolean bloomContains(long id){
+			long hash = id;
+			for(int i=0; i<bloomHashes; i++){
+				hash = HashCommon.murmurHash3(hash);
+				long bit = (hash & Long.MAX_VALUE) % bloomBits;
+				if((bloom[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0)
+					return false;
+			}
+			return true;
+		}
+	}
+
+}
@@ -38,6 +38,7 @@ import org.apache.log4j.Logger;
 
 import unipg.gila.common.coordinatewritables.AstralBodyCoordinateWritable;
 import unipg.gila.common.datastructures.messagetypes.LayoutMessage;
+import unipg.gila.common.multi.LayerLocalComputation;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 import unipg.gila.utils.Toolbox;
 
@@ -46,7 +47,8 @@ import unipg.gila.utils.Toolbox;
  *
  */
 public class AngularResolutionMaximizer
-extends AbstractComputation<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable, LayoutMessage, LayoutMessage>{
+extends AbstractComputation<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable, LayoutMessage, LayoutMessage>
+implements LayerLocalComputation{
 
 	//LOGGER
 	protected Logger log = Logger.getLogger(this.getClass());
@@ -181,7 +183,8 @@ extends AbstractComputation<LayeredPartitionedLongWritable, AstralBodyCoordinate
 	}
 
 	public static class AverageCoordinateUpdater
-	extends AbstractComputation<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable, LayoutMessage, LayoutMessage>{
+	extends AbstractComputation<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable, LayoutMessage, LayoutMessage>
+	implements LayerLocalComputation{
 
 
 		protected Logger log = Logger.getLogger(this.getClass());
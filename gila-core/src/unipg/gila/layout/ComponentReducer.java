@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+
+import unipg.gila.common.datastructures.FloatWritableArray;
+
+/**
+ * This class reduces the per-component data gathered by a compute thread (the bounding box of the coordinates and the number of
+ * vertices) into primitive arrays, one row per component, so that each thread aggregates a single map per aggregator at the end of
+ * the superstep instead of a map per vertex.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class ComponentReducer {
+
+	protected final Int2IntOpenHashMap rows = new Int2IntOpenHashMap();
+	protected final IntArrayList components = new IntArrayList();
+	protected final FloatArrayList bounds = new FloatArrayList();
+	protected final IntArrayList counts = new IntArrayList();
+	protected boolean counted;
+
+	public ComponentReducer(){
+		rows.defaultReturnValue(-1);
+	}
+
+	protected int row(int component){
+		int row = rows.get(component);
+		if(row < 0){
+			row = components.size();
+			rows.put(component, row);
+			components.add(component);
+			bounds.add(Float.POSITIVE_INFINITY);
+			bounds.add(Float.POSITIVE_INFINITY);
+			bounds.add(Float.NEGATIVE_INFINITY);
+			bounds.add(Float.NEGATIVE_INFINITY);
+			counts.add(0);
+		}
+		return row;
+	}
+
+	/**
+	 * Extends the bounding box of the given component to include the given coordinates.
+	 */
+	public void bounds(int component, float x, float y){
+		int offset = row(component)*4;
+		bounds.set(offset, Math.min(bounds.getFloat(offset), x));
+		bounds.set(offset + 1, Math.min(bounds.getFloat(offset + 1), y));
+		bounds.set(offset + 2, Math.max(bounds.getFloat(offset + 2), x));
+		bounds.set(offset + 3, Math.max(bounds.getFloat(offset + 3), y));
+	}
+
+	/**
+	 * Adds the given quantity to the vertex count of the given component.
+	 */
+	public void count(int component, int quantity){
+		int row = row(component);
+		counts.set(row, counts.getInt(row) + quantity);
+		counted = true;
+	}
+
+	public boolean isEmpty(){
+		return components.isEmpty();
+	}
+
+	public boolean isCounted(){
+		return counted;
+	}
+
+	/**
+	 * @return The minimum coordinates of each component, as expected by ComponentFloatXYMinAggregator.
+	 */
+	public MapWritable minimums(){
+		return boundsMap(0);
+	}
+
+	/**
+	 * @return The maximum coordinates of each component, as expected by ComponentFloatXYMaxAggregator.
+	 */
+	public MapWritable maximums(){
+		return boundsMap(2);
+	}
+
+	private MapWritable boundsMap(int column){
+		MapWritable result = new MapWritable();
+		float[] pair = new float[2];
+		for(int row=0; row<components.size(); row++){
+			pair[0] = bounds.getFloat(row*4 + column);
+			pair[1] = bounds.getFloat(row*4 + column + 1);
+			result.put(new IntWritable(components.getInt(row)), new FloatWritableArray(pair));
+		}
+		return result;
+	}
+
+	/**
+	 * @return The vertex count of each component, as expected by ComponentIntSumAggregator.
+	 */
+	public MapWritable counts(){
+		MapWritable result = new MapWritable();
+		for(int row=0; row<components.size(); row++)
+			result.put(new IntWritable(components.getInt(row)), new IntWritable(counts.getInt(row)));
+		return result;
+	}
+
+	public void clear(){
+		rows.clear();
+		components.clear();
+		bounds.clear();
+		counts.clear();
+		counted = false;
+	}
+
+}
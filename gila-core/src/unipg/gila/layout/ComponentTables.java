@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * This class holds the support methods for the dense per-component tables broadcast by the master. The components are sorted by id
+ * and the values of the i-th one are stored in a flat array from position i*stride; the sorted ids are broadcast as well, unless
+ * they already form the 0..C-1 range (which is the case when the components have been renumbered by the partitioner), so that the
+ * index of a component is either its id or the result of a binary search, and no object is created for a lookup.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class ComponentTables {
+
+	private ComponentTables(){
+	}
+
+	/**
+	 * Returns the sorted component ids of a map keyed by component.
+	 */
+	public static long[] sortedIds(MapWritable componentMap){
+		long[] ids = new long[componentMap.size()];
+		Iterator<Writable> keys = componentMap.keySet().iterator();
+		for(int i=0; keys.hasNext(); i++)
+			ids[i] = ((IntWritable)keys.next()).get();
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Returns the id table to broadcast: an empty array if the given sorted ids are 0..C-1, the ids themselves otherwise.
+	 */
+	public static long[] idTable(long[] sortedIds){
+		for(int i=0; i<sortedIds.length; i++)
+			if(sortedIds[i] != i)
+				return sortedIds;
+		return new long[0];
+	}
+
+	/**
+	 * Returns the index of the given component in the tables.
+	 * 
+	 * @param idTable The broadcast id table.
+	 * @param component The component id.
+	 */
+	public static int index(long[] idTable, int component){
+		if(idTable.length == 0)
+			return component;
+		return Arrays.binarySearch(idTable, component);
+	}
+
+}
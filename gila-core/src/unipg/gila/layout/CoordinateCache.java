@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+
+/**
+ * This class supports the delta broadcasts ("layout.flooding.delta"). For each vertex hosted on the worker it keeps the coordinates
+ * last sent by the vertex, so that the seeder can stay silent until the vertex moves farther than the threshold from them, and the
+ * last known coordinates of every payload received by the vertex, so that the propagator can keep on computing the forces exerted
+ * by silent vertices. The entries are held in a {@link StripedVertexStore}, so that they are released when the layer changes.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class CoordinateCache extends StripedVertexStore<CoordinateCache.Entry> {
+
+	CoordinateCache(){
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.StripedVertexStore#create()
+	 */
+	@Override
+	protected Entry create() {
+		return new Entry();
+	}
+
+	/**
+	 * The coordinates last sent by a vertex and the payloads it received, stored in parallel primitive lists indexed by slot.
+	 */
+	public static class Entry {
+
+		private boolean sent;
+		private float sentX;
+		private float sentY;
+
+		private final Long2IntOpenHashMap slots = new Long2IntOpenHashMap();
+		private final LongArrayList ids = new LongArrayList();
+		private final ShortArrayList partitions = new ShortArrayList();
+		private final FloatArrayList xs = new FloatArrayList();
+		private final FloatArrayList ys = new FloatArrayList();
+		private final IntArrayList weights = new IntArrayList();
+		private final FloatArrayList scales = new FloatArrayList();
+		private final BooleanArrayList attractive = new BooleanArrayList();
+		private final IntArrayList appliedRounds = new IntArrayList();
+
+		protected Entry(){
+			slots.defaultReturnValue(-1);
+		}
+
+		/**
+		 * Clears the entry at the beginning of a layout pass, so that every vertex sends its coordinates again.
+		 */
+		public void clear(){
+			sent = false;
+			slots.clear();
+			ids.clear();
+			partitions.clear();
+			xs.clear();
+			ys.clear();
+			weights.clear();
+			scales.clear();
+			attractive.clear();
+			appliedRounds.clear();
+		}
+
+		/**
+		 * Returns true if the vertex never sent its coordinates or moved farther than the given threshold since its last send.
+		 */
+		public boolean hasMoved(float x, float y, float epsilon){
+			if(!sent)
+				return true;
+			float deltaX = x - sentX;
+			float deltaY = y - sentY;
+			return deltaX*deltaX + deltaY*deltaY > epsilon*epsilon;
+		}
+
+		/**
+		 * Records the coordinates sent by the vertex.
+		 */
+		public void sent(float x, float y){
+			sent = true;
+			sentX = x;
+			sentY = y;
+		}
+
+		/**
+		 * Stores the last known coordinates of a payload and returns its slot.
+		 */
+		public int store(long id, short partition, float x, float y, int weight, float scale, boolean isAttractive){
+			int slot = slots.get(id);
+			if(slot == -1){
+				slot = ids.size();
+				slots.put(id, slot);
+				ids.add(id);
+				partitions.add(partition);
+				xs.add(x);
+				ys.add(y);
+				weights.add(weight);
+				scales.add(scale);
+				attractive.add(isAttractive);
+				appliedRounds.add(-1);
+				return slot;
+			}
+			xs.set(slot, x);
+			ys.set(slot, y);
+			weights.set(slot, weight);
+			scales.set(slot, scale);
+			attractive.set(slot, attractive.getBoolean(slot) || isAttractive);
+			return slot;
+		}
+
+		/**
+		 * Returns the slot of the given payload, or -1 if it is not cached.
+		 */
+		public int slotOf(long id){
+			return slots.get(id);
+		}
+
+		public int size(){
+			return ids.size();
+		}
+
+		public long getId(int slot){
+			return ids.getLong(slot);
+		}
+
+		public short getPartition(int slot){
+			return partitions.getShort(slot);
+		}
+
+		public float getX(int slot){
+			return xs.getFloat(slot);
+		}
+
+		public float getY(int slot){
+			return ys.getFloat(slot);
+		}
+
+		public int getWeight(int slot){
+			return weights.getInt(slot);
+		}
+
+		public float getScale(int slot){
+			return scales.getFloat(slot);
+		}
+
+		public boolean isAttractive(int slot){
+			return attractive.getBoolean(slot);
+		}
+
+		/**
+		 * Returns the round in which the cached coordinates of the payload were last used to compute the forces.
+		 */
+		public int getAppliedRound(int slot){
+			return appliedRounds.getInt(slot);
+		}
+
+		public void setAppliedRound(int slot, int round){
+			appliedRounds.set(slot, round);
+		}
+	}
+
+}
@@ -24,9 +24,9 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 
-import org.apache.giraph.edge.ArrayListEdges;
 import org.apache.giraph.edge.Edge;
 import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.OutEdges;
 import org.apache.giraph.graph.AbstractComputation;
 import org.apache.giraph.graph.Vertex;
 import org.apache.hadoop.io.FloatWritable;
@@ -364,7 +364,7 @@ public class GraphReintegration {
 		
 		@SuppressWarnings("unchecked")
 		private void addSingleOneDegreeVertex(long idOfOneEdge, float[] coordinatesOfVertexToPlace, Vertex<LayeredPartitionedLongWritable, V, E> neighborVertex){
-			ArrayListEdges<LayeredPartitionedLongWritable, E> ale = new ArrayListEdges<LayeredPartitionedLongWritable, E>();
+			OutEdges<LayeredPartitionedLongWritable, E> ale = getConf().createOutEdges();
 			ale.initialize(1);
 			ale.add(((Edge<LayeredPartitionedLongWritable, E>) EdgeFactory.create(neighborVertex.getId(), WritableFactories.newInstance(getConf().getEdgeValueClass()))));
 			V value = (V) WritableFactories.newInstance(getConf().getVertexValueClass());
@@ -34,6 +34,7 @@ import org.apache.hadoop.io.MapWritable;
 import com.google.common.collect.Lists;
 
 import unipg.gila.common.datastructures.FloatWritableArray;
+import unipg.gila.common.datastructures.LongWritableArray;
 import unipg.gila.layout.GraphReintegration.FairShareReintegrateOneEdges;
 import unipg.gila.layout.GraphReintegration.PlainDummyComputation;
 import unipg.gila.layout.LayoutRoutine.DrawingBoundariesExplorer;
@@ -88,18 +89,21 @@ public class GraphReintegrationRoutine {
 	}
 	
 	/**
-	 * This method computes the connected components final grid layout.
+	 * This method computes the connected components final grid layout. The offsets are broadcast as a dense table (five floats per
+	 * component) together with the component id table; see ComponentTables.
 	 */
 	protected void computeComponentGridLayout() {
 		
 		float componentPadding = master.getConf().getFloat(LayoutRoutine.componentPaddingConfString, LayoutRoutine.defaultPadding);
 		float minRatioThreshold = master.getConf().getFloat(LayoutRoutine.minRationThresholdString, LayoutRoutine.defaultMinRatioThreshold );
 		
-		MapWritable offsets = new MapWritable();
-				
 		MapWritable maxCoordsMap = master.getAggregatedValue(LayoutRoutine.maxCoords);
 		MapWritable minCoordsMap = master.getAggregatedValue(LayoutRoutine.minCoords);
 		MapWritable componentsNo = master.getAggregatedValue(LayoutRoutine.componentNoOfNodes);
+
+		long[] componentIds = ComponentTables.sortedIds(componentsNo);
+		long[] idTable = ComponentTables.idTable(componentIds);
+		float[] offsets = new float[componentIds.length*5];
 		
 		//##### SORTER -- THE MAP CONTAINING THE COMPONENTS' SIZES IS SORTED BY ITS VALUES
 		
@@ -117,7 +121,7 @@ public class GraphReintegrationRoutine {
 		int maxNo = componentSizeSorterValues[componentSizeSorter.length-1].get();// ((LongWritable)componentsNo.get(new LongWritable(maxID))).get();
 		
 		float[] translationCorrection = ((FloatWritableArray)minCoordsMap.get(new IntWritable(maxID))).get();
-		offsets.put(new IntWritable(maxID), new FloatWritableArray(new float[]{-translationCorrection[0], -translationCorrection[1], 1.0f, cursor.x, cursor.y}));
+		putOffsets(offsets, ComponentTables.index(idTable, maxID), -translationCorrection[0], -translationCorrection[1], 1.0f, cursor.x, cursor.y);
 		
 		float[] maxComponents = ((FloatWritableArray)maxCoordsMap.get(new IntWritable(maxID))).get();
 //		float componentPadding = getConf().getFloat(FloodingMaster.componentPaddingConfString, defaultPadding)*maxComponents[0];
@@ -141,7 +145,7 @@ public class GraphReintegrationRoutine {
 			maxComponents[0] *= sizeRatio;
 			maxComponents[1] *= sizeRatio;
 			
-			offsets.put(new IntWritable(currentComponent), new FloatWritableArray(new float[]{-translationCorrection[0], -translationCorrection[1], sizeRatio,  cursor.x, cursor.y}));
+			putOffsets(offsets, ComponentTables.index(idTable, currentComponent), -translationCorrection[0], -translationCorrection[1], sizeRatio,  cursor.x, cursor.y);
 			if(maxComponents[1] > coloumnMaxY)
 				coloumnMaxY = maxComponents[1];
 			if(counter % coloumnNo != 0){
@@ -153,7 +157,20 @@ public class GraphReintegrationRoutine {
 				counter = 1;
 			}
 		}
-		master.setAggregatedValue(LayoutRoutine.offsetsAggregator, offsets); //THE VALUES COMPUTED TO LAYOUT THE COMPONENTS ARE STORED INTO AN AGGREGATOR.
+		master.setAggregatedValue(LayoutRoutine.componentIdsAggregator, new LongWritableArray(idTable));
+		master.setAggregatedValue(LayoutRoutine.offsetsAggregator, new FloatWritableArray(offsets)); //THE VALUES COMPUTED TO LAYOUT THE COMPONENTS ARE STORED INTO AN AGGREGATOR.
+	}
+
+	/**
+	 * Stores the offsets of the component with the given index into the dense offsets table.
+	 */
+	private static void putOffsets(float[] offsets, int index, float translationX, float translationY, float sizeRatio, float x, float y){
+		int o = index*5;
+		offsets[o] = translationX;
+		offsets[o + 1] = translationY;
+		offsets[o + 2] = sizeRatio;
+		offsets[o + 3] = x;
+		offsets[o + 4] = y;
 	}
 	
 	/**
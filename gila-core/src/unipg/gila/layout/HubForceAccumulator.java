@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import unipg.gila.layout.force.Force;
+
+/**
+ * This class buffers the data needed to compute the forces acting on a vertex (one entry per analyzed message) and then accumulates
+ * them. When the number of entries exceeds the threshold set with "layout.hubs.threshold" the accumulation is split across a
+ * worker-wide fork-join pool and the partial attractive and repulsive sums are reduced in parallel; otherwise it is performed by the
+ * calling compute thread.
+ *
+ * Each propagator thread owns an instance, so the buffers are reused across vertices without synchronization.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class HubForceAccumulator {
+
+	/**
+	 * The minimum number of entries processed by a single fork-join task.
+	 */
+	protected static final int minimumSplit = 2048;
+
+	private static ForkJoinPool pool;
+
+	protected final int threshold;
+
+	protected final FloatArrayList deltaXs = new FloatArrayList();
+	protected final FloatArrayList deltaYs = new FloatArrayList();
+	protected final FloatArrayList desiredDistances = new FloatArrayList();
+	protected final IntArrayList weights = new IntArrayList();
+	protected final FloatArrayList scales = new FloatArrayList();
+	protected final BooleanArrayList attractive = new BooleanArrayList();
+	protected final BooleanArrayList repulsive = new BooleanArrayList();
+
+	//SCRATCH ARRAY OF THE SERIAL PATH, THE FORK-JOIN TASKS ALLOCATE THEIR OWN
+	protected final float[] scaledForce = new float[2];
+
+	public HubForceAccumulator(int threshold, int parallelism){
+		this.threshold = threshold;
+		initializePool(parallelism);
+	}
+
+	private static synchronized void initializePool(int parallelism){
+		if(pool == null)
+			pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Buffers the data of a message.
+	 *
+	 * @param deltaX The X displacement of the sender.
+	 * @param deltaY The Y displacement of the sender.
+	 * @param desiredDistance The optimal spring length towards the sender, if attractive forces are to be computed.
+	 * @param weight The weight of the sender.
+	 * @param isAttractive Whether the sender exerts an attractive force.
+	 * @param isRepulsive Whether the sender exerts a repulsive force.
+	 * @param scale The factor applied to the repulsive force, i.e. the number of vertices represented by the sender.
+	 */
+	public void add(float deltaX, float deltaY, float desiredDistance, int weight, boolean isAttractive, boolean isRepulsive, float scale){
+		deltaXs.add(deltaX);
+		deltaYs.add(deltaY);
+		desiredDistances.add(desiredDistance);
+		weights.add(weight);
+		scales.add(scale);
+		attractive.add(isAttractive);
+		repulsive.add(isRepulsive);
+	}
+
+	public int size(){
+		return deltaXs.size();
+	}
+
+	/**
+	 * Accumulates the forces of all the buffered entries and clears the buffers.
+	 *
+	 * @param force The force model.
+	 * @param v1Deg The weight of the vertex.
+	 * @param attractiveAccumulator The array to which the attractive forces are added.
+	 * @param repulsiveAccumulator The array to which the repulsive forces are added.
+	 */
+	public void accumulate(Force force, int v1Deg, float[] attractiveAccumulator, float[] repulsiveAccumulator){
+		int size = size();
+		if(size > threshold){
+			float[] result = pool.invoke(new AccumulationTask(this, force, v1Deg, 0, size));
+			attractiveAccumulator[0] += result[0];
+			attractiveAccumulator[1] += result[1];
+			repulsiveAccumulator[0] += result[2];
+			repulsiveAccumulator[1] += result[3];
+		}else
+			accumulateRange(force, v1Deg, 0, size, attractiveAccumulator, repulsiveAccumulator, scaledForce);
+		clear();
+	}
+
+	public void clear(){
+		deltaXs.clear();
+		deltaYs.clear();
+		desiredDistances.clear();
+		weights.clear();
+		scales.clear();
+		attractive.clear();
+		repulsive.clear();
+	}
+
+	/**
+	 * Accumulates the entries in [from, to) into the given arrays; scaledForce is a scratch array of two elements owned by the caller.
+	 */
+	protected void accumulateRange(Force force, int v1Deg, int from, int to, float[] attractiveForce, float[] repulsiveForce,
+			float[] scaledForce){
+		for(int i=from; i<to; i++){
+			float deltaX = deltaXs.getFloat(i);
+			float deltaY = deltaYs.getFloat(i);
+			float squareDistance = deltaX*deltaX + deltaY*deltaY;
+			float distance = (float) Math.sqrt(squareDistance);
+			int v2Deg = weights.getInt(i);
+			if(attractive.getBoolean(i))
+				force.accumulateAttractiveForce(deltaX, deltaY, distance, squareDistance, desiredDistances.getFloat(i), v1Deg, v2Deg, attractiveForce);
+			if(!repulsive.getBoolean(i))
+				continue;
+			float scale = scales.getFloat(i);
+			if(scale == 1.0f){
+				force.accumulateRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg, repulsiveForce);
+				continue;
+			}
+			scaledForce[0] = 0.0f;
+			scaledForce[1] = 0.0f;
+			force.accumulateRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg, scaledForce);
+			repulsiveForce[0] += scale*scaledForce[0];
+			repulsiveForce[1] += scale*scaledForce[1];
+		}
+	}
+
+	/**
+	 * A fork-join task which halves its range until it is small enough, then sums the partial results of the two halves.
+	 */
+	@SuppressWarnings("serial")
+	protected static class AccumulationTask extends RecursiveTask<float[]> {
+
+		private final HubForceAccumulator accumulator;
+		private final Force force;
+		private final int v1Deg;
+		private final int from;
+		private final int to;
+
+		protected AccumulationTask(HubForceAccumulator accumulator, Force force, int v1Deg, int from, int to){
+			this.accumulator = accumulator;
+			this.force = force;
+			this.v1Deg = v1Deg;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected float[] compute() {
+			if(to - from <= minimumSplit){
+				float[] attractiveForce = new float[2];
+				float[] repulsiveForce = new float[2];
+				accumulator.accumulateRange(force, v1Deg, from, to, attractiveForce, repulsiveForce, new float[2]);
+				return new float[]{attractiveForce[0], attractiveForce[1], repulsiveForce[0], repulsiveForce[1]};
+			}
+			int middle = (from + to) >>> 1;
+			AccumulationTask left = new AccumulationTask(accumulator, force, v1Deg, from, middle);
+			AccumulationTask right = new AccumulationTask(accumulator, force, v1Deg, middle, to);
+			left.fork();
+			float[] result = right.compute();
+			float[] leftResult = left.join();
+			for(int i=0; i<4; i++)
+				result[i] += leftResult[i];
+			return result;
+		}
+	}
+
+}
@@ -16,14 +16,15 @@
 package unipg.gila.layout;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Map.Entry;
 
 import org.apache.giraph.aggregators.BooleanAndAggregator;
+import org.apache.giraph.aggregators.BooleanOverwriteAggregator;
 import org.apache.giraph.aggregators.FloatMaxAggregator;
 import org.apache.giraph.aggregators.IntMaxAggregator;
+import org.apache.giraph.aggregators.IntOverwriteAggregator;
 import org.apache.giraph.aggregators.LongSumAggregator;
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.graph.AbstractComputation;
 import org.apache.giraph.graph.GraphState;
 import org.apache.giraph.graph.GraphTaskManager;
@@ -31,21 +32,24 @@ import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.master.MasterCompute;
 import org.apache.giraph.worker.WorkerContext;
 import org.apache.giraph.worker.WorkerGlobalCommUsage;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.MapWritable;
-import org.apache.hadoop.io.Writable;
 import org.apache.log4j.Logger;
 
+import unipg.gila.aggregators.ArrayOverwriteAggregator.FloatArrayOverwriteAggregator;
+import unipg.gila.aggregators.ArrayOverwriteAggregator.LongArrayOverwriteAggregator;
 import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentFloatXYMaxAggregator;
 import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentFloatXYMinAggregator;
 import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentIntSumAggregator;
-import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentMapOverwriteAggregator;
+import unipg.gila.aggregators.ComponentAggregatorAbstract.PartitionSummaryAggregator;
 import unipg.gila.aggregators.LongWritableSetAggregator;
 import unipg.gila.common.coordinatewritables.CoordinateWritable;
 import unipg.gila.common.datastructures.FloatWritableArray;
+import unipg.gila.common.datastructures.LongWritableArray;
 import unipg.gila.common.datastructures.messagetypes.LayoutMessage;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 import unipg.gila.coolingstrategies.CoolingStrategy;
@@ -83,6 +87,23 @@ public class LayoutRoutine {
 	public static final String useQueuesString = "flooding.useQueues";
 	public static final String queueUnloadFactor = "layout.queueUnloadFactor";
 	public static final float queueUnloadFactorDefault = 0.1f;
+	public static final String localTableString = "layout.flooding.localTable";
+	public static final String indexString = "layout.flooding.index";
+	public static final String sampleBudgetString = "layout.flooding.sampleBudget";
+	public static final int sampleBudgetDefault = 0;
+	public static final String deltaString = "layout.flooding.delta";
+	public static final String deltaEpsilonString = "layout.flooding.delta.epsilon";
+	public static final String compactMessagesString = "layout.messages.compact";
+	public static final String quantizedMessagesString = "layout.messages.quantize";
+	public static final String dedupString = "layout.flooding.dedup";
+	public static final String dedupBudgetString = "layout.flooding.dedup.budget";
+	public static final String dedupBloomBitsString = "layout.flooding.dedup.bloomBits";
+	public static final int dedupBudgetDefault = 4000000;
+	public static final long dedupBloomBitsDefault = 1L << 27;
+	public static final String analyzedHubThresholdString = "layout.analyzed.hubThreshold";
+	public static final String analyzedBloomBitsString = "layout.analyzed.bloomBits";
+	public static final int analyzedHubThresholdDefault = 0;
+	public static final int analyzedBloomBitsDefault = 1 << 20;
 
 	//REINTEGRATION OPTIONS
 	public static final String radiusString = "reintegration.radius";
@@ -104,6 +125,8 @@ public class LayoutRoutine {
 	public final static String node_separation = "layout.node_separation";
 	public final String initialTempFactorString = "layout.initialTempFactor";
 	public static final String coolingSpeed = "layout.coolingSpeed";
+	public static final String coolingStrategyString = "layout.coolingStrategy";
+	public static final String coolingStrategyExtraOptionsString = "layout.coolingStrategy.extraOptions";
 	public static final String walshawModifierString = "layout.walshawModifier";
 	public static final String accuracyString = "layout.accuracy";
 	public static final float walshawModifierDefault = 1.0f;
@@ -133,6 +156,8 @@ public class LayoutRoutine {
 	public static final String walshawConstant_agg = "WALSHAW_AGG";
 	public final static String maxCoords = "AGG_MAX_COORDINATES";
 	public final static String minCoords = "AGG_MIN_COORDINATES";
+	public final static String minCoordsTable = "AGG_MIN_COORDINATES_TABLE";
+	public final static String componentIdsAggregator = "AGG_COMPONENT_IDS";
 	public final static String tempAGG = "AGG_TEMP";
 	public static final String correctedSizeAGG = "AGG_CORR_SIZE";
 	protected final static String scaleFactorAgg = "AGG_SCALEFACTOR";
@@ -141,10 +166,13 @@ public class LayoutRoutine {
 	public static final String tempAggregator = "AGG_TEMP";
 	protected static final String offsetsAggregator = "AGG_CC_BOXES";
 	public static final String ttlMaxAggregator = "AGG_MAX_TTL";
+	public static final String fusedSeedAggregator = "AGG_FUSED_SEED";
+	public static final String layoutRoundAggregator = "AGG_LAYOUT_ROUND";
 	public static final String angleMaximizationClockwiseAggregator = "AGG_CLCKROTATION";
 	public static final String initialTempFactorAggregator = "TEMP_FACT_AGG";
 	public static final String coolingSpeedAggregator = "COOLING_SPEED_AGG";
 	public static final String currentAccuracyAggregator = "CURRENT_ACCURACY_AGGREGATOR";
+	public static final String partitionSummariesAggregator = "AGG_PARTITION_SUMMARIES";
 
 	//COUNTERS
 	protected static final String COUNTER_GROUP = "Drawing Counters";
@@ -155,6 +183,23 @@ public class LayoutRoutine {
 	public static final String repulsiveForceEnhancerString = "layout.enhanceRepulsiveForcesBy";
 	public static final float repulsiveForceEnhancementDefault = 2.0f;
 
+	//BARNES-HUT OPTIONS
+	public static final String barnesHutString = "layout.repulsion.barnesHut";
+	public static final String barnesHutThetaString = "layout.repulsion.barnesHut.theta";
+	public static final float barnesHutThetaDefault = 0.8f;
+
+	//HUB OPTIONS
+	public static final String parallelHubsString = "layout.hubs.parallel";
+	public static final String hubThresholdString = "layout.hubs.threshold";
+	public static final String hubParallelismString = "layout.hubs.parallelism";
+	public static final int hubThresholdDefault = 10000;
+
+	//FUSED SEEDING AND PROPAGATION OPTIONS
+	public static final String fusedString = "layout.fused";
+
+	//PARTITION SUMMARIES OPTIONS
+	public static final String partitionSummariesString = "layout.repulsion.partitionSummaries";
+
 	//GLOBAL STATIC VARIABLES
 	public static boolean logLayout;
 
@@ -171,10 +216,14 @@ public class LayoutRoutine {
 	private long egira;
 	private boolean firstCall;
 	private int totalCalls;
+	protected float placementTempBoost = 1.0f;
+	private long fusedHops;
+	private int layoutRound;
 
 	protected MasterCompute master;
 	protected Class<? extends AbstractSeeder> seeder;
 	protected Class<? extends AbstractPropagator> propagator;
+	protected Class<? extends AbstractPropagator> fusedPropagator;
 	protected Class<? extends DrawingBoundariesExplorer> drawingExplorer;
 	protected Class<? extends DrawingBoundariesExplorerWithComponentsNo> drawingExplorerWithCCs;
 	protected Class<? extends DrawingScaler> drawingScaler;
@@ -202,6 +251,11 @@ public class LayoutRoutine {
 		
 		logLayout = master.getConf().getBoolean(logLayoutString, false);
 
+		checkPropagatorModes(master.getConf());
+		if(!LayoutWorkerContext.class.isAssignableFrom(master.getConf().getWorkerContextClass()))
+			throw new IllegalArgumentException(GiraphConstants.WORKER_CONTEXT_CLASS.getKey() + " must be "
+					+ LayoutWorkerContext.class.getName() + " or a subclass, since it owns the worker stores of the layout.");
+
 		maxSuperstep = master.getConf().getInt(computationLimit, maxSstepsDefault);
 
 		threshold = master.getConf().getFloat(convergenceThresholdString, defaultConvergenceThreshold);
@@ -216,17 +270,18 @@ public class LayoutRoutine {
 
 		// FRAME AGGREGATORS
 
-		master.registerPersistentAggregator(correctedSizeAGG, ComponentMapOverwriteAggregator.class);
+		master.registerPersistentAggregator(correctedSizeAGG, FloatArrayOverwriteAggregator.class);
 
 		// TEMP AGGREGATORS
 
-		master.registerPersistentAggregator(tempAGG, ComponentMapOverwriteAggregator.class);
+		master.registerPersistentAggregator(tempAGG, FloatArrayOverwriteAggregator.class);
 
 		// COORDINATES AGGREGATORS
 
 		master.registerPersistentAggregator(maxCoords, ComponentFloatXYMaxAggregator.class);
 		master.registerPersistentAggregator(minCoords, ComponentFloatXYMinAggregator.class);
-		master.registerAggregator(scaleFactorAgg, ComponentMapOverwriteAggregator.class);
+		master.registerAggregator(minCoordsTable, FloatArrayOverwriteAggregator.class);
+		master.registerAggregator(scaleFactorAgg, FloatArrayOverwriteAggregator.class);
 
 		// CONSTANT AGGREGATORS
 
@@ -241,10 +296,23 @@ public class LayoutRoutine {
 
 //		master.registerPersistentAggregator(componentNumber, IntSetAggregator.class);
 		master.registerPersistentAggregator(componentNoOfNodes, ComponentIntSumAggregator.class);
-		master.registerAggregator(offsetsAggregator, ComponentMapOverwriteAggregator.class);
+		master.registerPersistentAggregator(componentIdsAggregator, LongArrayOverwriteAggregator.class);
+		master.registerAggregator(offsetsAggregator, FloatArrayOverwriteAggregator.class);
 		
 		master.registerAggregator(angleMaximizationClockwiseAggregator, BooleanAndAggregator.class);
 
+		//FAR FIELD AGGREGATORS
+
+		master.registerAggregator(partitionSummariesAggregator, PartitionSummaryAggregator.class);
+
+		//FUSED SEEDING AGGREGATORS
+
+		master.registerPersistentAggregator(fusedSeedAggregator, BooleanOverwriteAggregator.class);
+
+		//NEIGHBOURHOOD INDEX AGGREGATORS
+
+		master.registerPersistentAggregator(layoutRoundAggregator, IntOverwriteAggregator.class);
+
 		//		float walshawModifier = master.getConf().getFloat(walshawModifierString, walshawModifierDefault);
 
 		float nl = master.getConf().getFloat(LayoutRoutine.node_length , LayoutRoutine.defaultNodeValue);
@@ -256,8 +324,20 @@ public class LayoutRoutine {
 //		coolingStrategy = new LinearCoolingStrategy(new String[]{master.getConf().get(LayoutRoutine.coolingSpeed, defaultCoolingSpeed )});
 	}
 
+	/**
+	 * Sets the propagator which also seeds the vertices when flagged to; it is used instead of the seeder/propagator alternation
+	 * only if "layout.fused" is set.
+	 * 
+	 * @param fusedPropagator The fused propagator class.
+	 */
+	public void setFusedPropagator(Class<? extends AbstractPropagator> fusedPropagator){
+		if(master.getConf().getBoolean(fusedString, false))
+			this.fusedPropagator = fusedPropagator;
+	}
+
 	/**
 	 * This method executes a number of tasks to tune the algorithm given the proportions of the initial (random) layout of each component.
+	 * The results are broadcast as dense tables (two floats per component) together with the component id table; see ComponentTables.
 	 * 
 	 * @throws IllegalAccessException
 	 */
@@ -267,36 +347,38 @@ public class LayoutRoutine {
 		MapWritable aggregatedMinComponentData = master.getAggregatedValue(minCoords);
 		MapWritable componentNodesMap = master.getAggregatedValue(componentNoOfNodes);
 
-		Iterator<Entry<Writable, Writable>> iteratorOverComponents = aggregatedMaxComponentData.entrySet().iterator();
+		long[] componentIds = ComponentTables.sortedIds(aggregatedMaxComponentData);
 
 //		float tempConstant = master.getConf().getFloat(initialTempFactorString, defaultInitialTempFactor);
 		
-		coolingStrategy = new LinearCoolingStrategy(new String[]{String.valueOf(((FloatWritable)master.getAggregatedValue(coolingSpeedAggregator)).get())});
+		coolingStrategy = createCoolingStrategy(master.getConf(), ((FloatWritable)master.getAggregatedValue(coolingSpeedAggregator)).get());
 		
-		float tempConstant = ((FloatWritable)master.getAggregatedValue(initialTempFactorAggregator)).get();
+		float tempConstant = ((FloatWritable)master.getAggregatedValue(initialTempFactorAggregator)).get()*placementTempBoost;
+		placementTempBoost = 1.0f;
 		
-		MapWritable correctedSizeMap = new MapWritable();
-		MapWritable tempMap = new MapWritable();
-		MapWritable scaleFactorMap = new MapWritable();
-
-		while(iteratorOverComponents.hasNext()){
-			Entry<Writable, Writable> currentEntryMax = iteratorOverComponents.next();
-
-			Writable key = currentEntryMax.getKey();
-
-			float[] maxCurrent = ((FloatWritableArray)currentEntryMax.getValue()).get();
+		float[] correctedSizes = new float[componentIds.length*2];
+		float[] temps = new float[componentIds.length*2];
+		float[] scaleFactors = new float[componentIds.length*2];
+		float[] minimums = new float[componentIds.length*2];
+		IntWritable key = new IntWritable();
+
+		for(int i=0; i<componentIds.length; i++){
+			key.set((int) componentIds[i]);
+			int x = i*2;
+			int y = x + 1;
+
+			float[] maxCurrent = ((FloatWritableArray)aggregatedMaxComponentData.get(key)).get();
 			float[] minCurrent = ((FloatWritableArray)aggregatedMinComponentData.get(key)).get();
+			minimums[x] = minCurrent[0];
+			minimums[y] = minCurrent[1];
 
 			int noOfNodes = ((IntWritable)componentNodesMap.get(key)).get();
 			if(noOfNodes == 1){
-				float[] correctedSizes = new float[]{1, 1};
-				float[] scaleFactors = new float[]{1, 1};
-				float[] temps = new float[]{0, 0};
-
-				correctedSizeMap.put(key, new FloatWritableArray(correctedSizes));
-				tempMap.put(key, new FloatWritableArray(temps));
-				scaleFactorMap.put(key, new FloatWritableArray(scaleFactors));
-				continue;
+				correctedSizes[x] = 1;
+				correctedSizes[y] = 1;
+				scaleFactors[x] = 1;
+				scaleFactors[y] = 1;
+				continue; //THE TEMPERATURE OF A SINGLE VERTEX IS 0.
 			}
 			
 			float w = Toolbox.floatFuzzyMath((maxCurrent[0] - minCurrent[0])) + optimalEdgeLength;
@@ -306,37 +388,83 @@ public class LayoutRoutine {
 			float W = new Double(Math.sqrt(noOfNodes/ratio)*optimalEdgeLength).floatValue();	
 			float H = ratio*W;
 
-			float[] correctedSizes = new float[]{W, H};
-			float[] scaleFactors = new float[]{W/w, H/h};
-			float[] temps = new float[]{W/tempConstant, H/tempConstant};
+			correctedSizes[x] = W;
+			correctedSizes[y] = H;
+			scaleFactors[x] = W/w;
+			scaleFactors[y] = H/h;
+			temps[x] = W/tempConstant;
+			temps[y] = H/tempConstant;
+		}
 
-			correctedSizeMap.put(key, new FloatWritableArray(correctedSizes));
-			tempMap.put(key, new FloatWritableArray(temps));
-			scaleFactorMap.put(key, new FloatWritableArray(scaleFactors));
+		master.setAggregatedValue(componentIdsAggregator, new LongWritableArray(ComponentTables.idTable(componentIds)));
+		master.setAggregatedValue(correctedSizeAGG, new FloatWritableArray(correctedSizes));
+		master.setAggregatedValue(tempAGG, new FloatWritableArray(temps));
+		master.setAggregatedValue(scaleFactorAgg, new FloatWritableArray(scaleFactors));
+		master.setAggregatedValue(minCoordsTable, new FloatWritableArray(minimums));
+	}
 
+	/**
+	 * Instantiates the cooling strategy set with "layout.coolingStrategy" (LinearCoolingStrategy by default); its arguments are the
+	 * cooling speed followed by the values of "layout.coolingStrategy.extraOptions".
+	 * 
+	 * @param conf The configuration.
+	 * @param coolingSpeed The current cooling speed.
+	 * @return The cooling strategy.
+	 */
+	public static CoolingStrategy createCoolingStrategy(Configuration conf, float coolingSpeed){
+		String[] extraOptions = conf.getStrings(coolingStrategyExtraOptionsString, "");
+		String[] args = new String[extraOptions.length + 1];
+		args[0] = String.valueOf(coolingSpeed);
+		System.arraycopy(extraOptions, 0, args, 1, extraOptions.length);
+		try {
+			return Class.forName(conf.get(coolingStrategyString, LinearCoolingStrategy.class.getName()))
+					.asSubclass(CoolingStrategy.class).getConstructor(String[].class).newInstance((Object) args);
+		} catch (Exception e) {
+			return new LinearCoolingStrategy(args);
 		}
+	}
+
+	/**
+	 * Checks that the propagator modes set in the configuration can be combined. The Barnes-Hut repulsion, the partition summaries,
+	 * the local coordinate table, the deduplication, the neighbourhood index, the delta broadcasts, the hub mode and the fused seeding
+	 * compose: each of them either takes over a disjoint share of the forces, which the others skip, or only changes how the messages
+	 * are delivered. The sampled flooding does not compose with the neighbourhood index, which would record only the payloads sampled
+	 * in the first round and drop their scale, nor with the delta broadcasts, which would keep on applying the scale a payload had
+	 * when it was last sampled in the rounds in which it is silent.
+	 * 
+	 * @param conf The configuration.
+	 * @throws IllegalArgumentException if the configuration sets an unsupported combination.
+	 */
+	public static void checkPropagatorModes(Configuration conf){
+		if(conf.getInt(sampleBudgetString, sampleBudgetDefault) <= 0)
+			return;
+		if(conf.getBoolean(indexString, false))
+			throw new IllegalArgumentException(sampleBudgetString + " cannot be combined with " + indexString
+					+ ": the index would only record the payloads sampled in the first round, without their scale.");
+		if(conf.getBoolean(deltaString, false))
+			throw new IllegalArgumentException(sampleBudgetString + " cannot be combined with " + deltaString
+					+ ": silent payloads would be applied with the scale of an earlier sample.");
+	}
 
-		master.setAggregatedValue(correctedSizeAGG, correctedSizeMap);
-		master.setAggregatedValue(tempAGG, tempMap);
-		master.setAggregatedValue(scaleFactorAgg, scaleFactorMap);
+	/**
+	 * Notifies the routine that the next layout starts from an informed placement (such as the pivot-MDS one) instead of a random one;
+	 * the initial temperature factor of the next call is multiplied by the given boost, so that fewer rounds are needed to converge.
+	 * 
+	 * @param tempFactorBoost The boost to apply to the initial temperature factor.
+	 */
+	public void setInformedPlacement(float tempFactorBoost){
+		placementTempBoost = tempFactorBoost;
 	}
 
 	/**
 	 * Convenience method to update the temperature aggregator each time a new seeding phase is performed.
 	 */
 	protected void updateTemperatureAggregator(){
-		MapWritable tempMap = master.getAggregatedValue(tempAGG);
-		Iterator<Entry<Writable, Writable>> tempsIterator = tempMap.entrySet().iterator();
-		MapWritable newTempsMap = new MapWritable();
-
-		while(tempsIterator.hasNext()){
-			Entry<Writable, Writable> currentTemp = tempsIterator.next();
-			float[] temps = ((FloatWritableArray)currentTemp.getValue()).get();
-			newTempsMap.put(currentTemp.getKey(), new FloatWritableArray(new float[]{coolingStrategy.cool(temps[0]),
-					coolingStrategy.cool(temps[1])}));
-
-		}		
-		master.setAggregatedValue(tempAGG, newTempsMap);
+		float[] temps = ((FloatWritableArray)master.getAggregatedValue(tempAGG)).get();
+		float[] newTemps = new float[temps.length];
+		for(int i=0; i<temps.length; i++)
+			newTemps[i] = coolingStrategy.cool(temps[i]);
+		master.setAggregatedValue(tempAGG, new FloatWritableArray(newTemps));
 	}
 
 	/**
@@ -349,6 +477,7 @@ public class LayoutRoutine {
 			totalCalls++;
 			egira = master.getSuperstep();
 			ignition = false;
+			layoutRound = 0;
 			master.setComputation(drawingExplorerWithCCs);
 			return false;
 		}
@@ -367,20 +496,28 @@ public class LayoutRoutine {
 				if(!firstCall){
 					firstCall = true;
 					master.setComputation(drawingScaler); //... AND APPLY THEM
-				}else
+				}else{
 					master.setComputation(seeder);
+					startLayoutRound();
+				}
 				return false;
 			} catch (IllegalAccessException e) {
 				master.haltComputation();
 				return true;
 			}
 		}
+		//FUSED REGIME COMPUTATION
+		if(fusedPropagator != null && (master.getComputation().equals(seeder) || master.getComputation().equals(fusedPropagator))){
+			fusedRegimeCompute();
+			return false;
+		}
 		//REGIME COMPUTATION
 		if(((BooleanWritable)master.getAggregatedValue(MessagesAggregatorString)).get() && !(master.getComputation().toString().contains("Seeder"))){
 			if(settledSteps > 0)
 				updateTemperatureAggregator();	//COOL DOWN THE TEMPERATURE
 			master.setComputation(seeder); //PERFORM THE LAYOUT UPDATE AND SEEDING
 			settledSteps++;
+			startLayoutRound();
 		}else
 			if(!(master.getComputation().toString().contains("Propagator"))){
 				master.setComputation(propagator); //PROPAGATE THE MESSAGES AND COMPUTE THE FORCES
@@ -388,6 +525,39 @@ public class LayoutRoutine {
 		return false;
 	}
 
+	/**
+	 * After the first seeding the fused propagator runs at every superstep. A superstep is flagged as a seeding one when the
+	 * messages of the round reach their last hop, i.e. after ttlmax hops, or earlier if no message was sent in the last superstep;
+	 * the temperature is cooled down as when switching to the seeder. Once the neighbourhood index is ready every payload is
+	 * delivered in a single hop, so each superstep is a seeding one.
+	 */
+	protected void fusedRegimeCompute(){
+		if(master.getComputation().equals(seeder))
+			fusedHops = 0;
+		fusedHops++;
+		int ttlmax = ((IntWritable)master.getAggregatedValue(ttlMaxAggregator)).get();
+		int hops = master.getConf().getBoolean(indexString, false) && layoutRound > 1 ? 1 : ttlmax;
+		boolean seedNow = fusedHops >= hops || ((BooleanWritable)master.getAggregatedValue(MessagesAggregatorString)).get();
+		if(seedNow){
+			if(settledSteps > 0)
+				updateTemperatureAggregator();	//COOL DOWN THE TEMPERATURE
+			settledSteps++;
+			fusedHops = 0;
+			startLayoutRound();
+		}
+		master.setAggregatedValue(fusedSeedAggregator, new BooleanWritable(seedNow));
+		master.setComputation(fusedPropagator);
+	}
+
+	/**
+	 * Counts a new seeding round of the current layout pass and broadcasts it; the first round of each pass builds the
+	 * neighbourhood index used by the following ones.
+	 */
+	protected void startLayoutRound(){
+		layoutRound++;
+		master.setAggregatedValue(layoutRoundAggregator, new IntWritable(layoutRound));
+	}
+
 	/**
 	 * Check for graph equilibrium.
 	 * @return true if the number of vertices which did not move above the threshold is higher than the convergence
@@ -416,6 +586,7 @@ public class LayoutRoutine {
 
 	/**
 	 * In this computation each vertex simply aggregates its coordinates to the max and min coodinates aggregator of its component.
+	 * The coordinates are first reduced by each compute thread, which aggregates its partial bounding boxes once per superstep.
 	 * 
 	 * @author Alessio Arleo
 	 *
@@ -425,6 +596,7 @@ public class LayoutRoutine {
 		
 		protected float[] coords;
 		protected V vValue;
+		protected final ComponentReducer componentReducer = new ComponentReducer();
 		
 		/* (non-Javadoc)
 		 * @see org.apache.giraph.graph.AbstractComputation#initialize(org.apache.giraph.graph.GraphState, org.apache.giraph.comm.WorkerClientRequestProcessor, org.apache.giraph.graph.GraphTaskManager, org.apache.giraph.worker.WorkerGlobalCommUsage, org.apache.giraph.worker.WorkerContext)
@@ -446,10 +618,22 @@ public class LayoutRoutine {
 				Iterable<LayoutMessage> msgs) throws IOException {
 			vValue = vertex.getValue();
 			coords = vValue.getCoordinates();
-			MapWritable myCoordsPackage = new MapWritable();
-			myCoordsPackage.put(new IntWritable(vValue.getComponent()), new FloatWritableArray(coords));
-			aggregate(maxCoords, myCoordsPackage);
-			aggregate(minCoords, myCoordsPackage);
+			componentReducer.bounds(vValue.getComponent(), coords[0], coords[1]);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.apache.giraph.graph.AbstractComputation#postSuperstep()
+		 */
+		@Override
+		public void postSuperstep() {
+			super.postSuperstep();
+			if(componentReducer.isEmpty())
+				return;
+			aggregate(maxCoords, componentReducer.maximums());
+			aggregate(minCoords, componentReducer.minimums());
+			if(componentReducer.isCounted())
+				aggregate(componentNoOfNodes, componentReducer.counts());
+			componentReducer.clear();
 		}
 
 	}
@@ -476,10 +660,7 @@ public class LayoutRoutine {
 				Vertex<LayeredPartitionedLongWritable, V, E> vertex,
 				Iterable<LayoutMessage> msgs) throws IOException {
 			super.compute(vertex, msgs);
-			MapWritable information = new MapWritable();
-			information.put(new IntWritable(vValue.getComponent()), 
-					new IntWritable((int)1 + vertex.getValue().getOneDegreeVerticesQuantity()));
-			aggregate(componentNoOfNodes, information);
+			componentReducer.count(vValue.getComponent(), 1 + vValue.getOneDegreeVerticesQuantity());
 //			aggregate(componentNumber, new IntWritable(vValue.getComponent()));
 		}
 	}
@@ -493,8 +674,9 @@ public class LayoutRoutine {
 	public static class DrawingScaler <V extends CoordinateWritable, E extends IntWritable> extends
 	AbstractComputation<LayeredPartitionedLongWritable, V, E,LayoutMessage, LayoutMessage>{
 
-		MapWritable scaleFactors;
-		MapWritable minCoordinateMap;
+		long[] componentIds;
+		float[] scaleFactors;
+		float[] minimums;
 
 		/* (non-Javadoc)
 		 * @see org.apache.giraph.graph.AbstractComputation#initialize(org.apache.giraph.graph.GraphState, org.apache.giraph.comm.WorkerClientRequestProcessor, org.apache.giraph.graph.GraphTaskManager, org.apache.giraph.worker.WorkerGlobalCommUsage, org.apache.giraph.worker.WorkerContext)
@@ -513,8 +695,9 @@ public class LayoutRoutine {
 		@Override
 		public void preSuperstep() {
 			super.preSuperstep();
-			scaleFactors = getAggregatedValue(scaleFactorAgg);
-			minCoordinateMap = getAggregatedValue(minCoords);
+			componentIds = ((LongWritableArray)getAggregatedValue(componentIdsAggregator)).get();
+			scaleFactors = ((FloatWritableArray)getAggregatedValue(scaleFactorAgg)).get();
+			minimums = ((FloatWritableArray)getAggregatedValue(minCoordsTable)).get();
 		}
 
 		@Override
@@ -523,9 +706,8 @@ public class LayoutRoutine {
 				Iterable<LayoutMessage> msgs) throws IOException {
 			V vValue = vertex.getValue();
 			float[] coords = vValue.getCoordinates();
-			float[] factors = ((FloatWritableArray)scaleFactors.get(new IntWritable(vValue.getComponent()))).get();
-			float[] minCoords = ((FloatWritableArray)minCoordinateMap.get(new IntWritable(vValue.getComponent()))).get();			
-			vValue.setCoordinates((coords[0] - minCoords[0])*factors[0], (coords[1] - minCoords[1])*factors[1]);
+			int x = ComponentTables.index(componentIds, vValue.getComponent())*2;
+			vValue.setCoordinates((coords[0] - minimums[x])*scaleFactors[x], (coords[1] - minimums[x + 1])*scaleFactors[x + 1]);
 		}
 	}
 
@@ -538,7 +720,8 @@ public class LayoutRoutine {
 	public static class LayoutCCs <V extends CoordinateWritable, E extends IntWritable> extends
 	AbstractComputation<LayeredPartitionedLongWritable, V, E, LayoutMessage, LayoutMessage>{
 
-		MapWritable offsets;
+		long[] componentIds;
+		float[] offsets;
 
 		float componentPadding;
 		
@@ -562,13 +745,14 @@ public class LayoutRoutine {
 				Iterable<LayoutMessage> msgs) throws IOException {
 			V vValue = vertex.getValue();
 			float[] coords = vValue.getCoordinates();
-			float[] ccOffset = ((FloatWritableArray)offsets.get(new IntWritable(vValue.getComponent()))).get();
-			vValue.setCoordinates(((coords[0] + ccOffset[0])*ccOffset[2]) + ccOffset[3], ((coords[1] + ccOffset[1])*ccOffset[2]) + ccOffset[4]);
+			int o = ComponentTables.index(componentIds, vValue.getComponent())*5;
+			vValue.setCoordinates(((coords[0] + offsets[o])*offsets[o + 2]) + offsets[o + 3], ((coords[1] + offsets[o + 1])*offsets[o + 2]) + offsets[o + 4]);
 		}
 
 		@Override
 		public void preSuperstep() {
-			offsets = getAggregatedValue(offsetsAggregator);
+			componentIds = ((LongWritableArray)getAggregatedValue(componentIdsAggregator)).get();
+			offsets = ((FloatWritableArray)getAggregatedValue(offsetsAggregator)).get();
 		}
 
 	}
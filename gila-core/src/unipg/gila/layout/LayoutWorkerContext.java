@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.layout;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.worker.WorkerContext;
+import org.apache.hadoop.conf.Configuration;
+
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This worker context owns the worker stores shared by the compute threads of the layout: the analyzed payloads and, when their
+ * options are set, the Barnes-Hut quadtree, the local coordinate table, the neighbourhood index, the coordinate cache and the
+ * message deduplicator. The stores are created anew in preApplication, so that no state survives from a previous application run
+ * in the same JVM, and released in postApplication. The layout jobs must set "giraph.workerContextClass" to this class or to a
+ * subclass.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class LayoutWorkerContext extends WorkerContext {
+
+	protected AnalyzedPayloads analyzedPayloads;
+	protected WorkerQuadTree quadTree;
+	protected WorkerCoordinateTable coordinateTable;
+	protected NeighbourhoodIndex index;
+	protected CoordinateCache coordinateCache;
+	protected MessageDeduplicator deduplicator;
+
+	/**
+	 * Returns the given worker context as a LayoutWorkerContext.
+	 *
+	 * @throws IllegalStateException if the job was not configured with a LayoutWorkerContext.
+	 */
+	public static LayoutWorkerContext of(WorkerContext workerContext){
+		if(!(workerContext instanceof LayoutWorkerContext))
+			throw new IllegalStateException("The layout computations need a " + LayoutWorkerContext.class.getName()
+					+ "; set " + GiraphConstants.WORKER_CONTEXT_CLASS.getKey() + " to it or to a subclass.");
+		return (LayoutWorkerContext) workerContext;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#preApplication()
+	 */
+	@Override
+	public void preApplication() throws InstantiationException, IllegalAccessException {
+		Configuration conf = getConf();
+		LayoutRoutine.checkPropagatorModes(conf);
+		analyzedPayloads = new AnalyzedPayloads(conf.getInt(LayoutRoutine.analyzedHubThresholdString, LayoutRoutine.analyzedHubThresholdDefault),
+				conf.getInt(LayoutRoutine.analyzedBloomBitsString, LayoutRoutine.analyzedBloomBitsDefault));
+		quadTree = conf.getBoolean(LayoutRoutine.barnesHutString, false) ? new WorkerQuadTree() : null;
+		coordinateTable = conf.getBoolean(LayoutRoutine.localTableString, false) ? new WorkerCoordinateTable() : null;
+		index = conf.getBoolean(LayoutRoutine.indexString, false) ? new NeighbourhoodIndex() : null;
+		coordinateCache = conf.getBoolean(LayoutRoutine.deltaString, false) ? new CoordinateCache() : null;
+		deduplicator = conf.getBoolean(LayoutRoutine.dedupString, false) ?
+				new MessageDeduplicator(conf.getInt(LayoutRoutine.dedupBudgetString, LayoutRoutine.dedupBudgetDefault),
+						conf.getLong(LayoutRoutine.dedupBloomBitsString, LayoutRoutine.dedupBloomBitsDefault)) : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#postApplication()
+	 */
+	@Override
+	public void postApplication() {
+		analyzedPayloads = null;
+		quadTree = null;
+		coordinateTable = null;
+		index = null;
+		coordinateCache = null;
+		deduplicator = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#preSuperstep()
+	 */
+	@Override
+	public void preSuperstep() {
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#postSuperstep()
+	 */
+	@Override
+	public void postSuperstep() {
+	}
+
+	/**
+	 * Releases the data kept by the worker stores for the given vertex, once its layer has been laid out.
+	 *
+	 * @param vertexId The id of the vertex.
+	 */
+	public void releaseVertex(LayeredPartitionedLongWritable vertexId){
+		analyzedPayloads.remove(vertexId);
+		if(index != null)
+			index.remove(vertexId);
+		if(coordinateCache != null)
+			coordinateCache.remove(vertexId);
+	}
+
+	public AnalyzedPayloads getAnalyzedPayloads() {
+		return analyzedPayloads;
+	}
+
+	/**
+	 * @return The quadtree, or null if "layout.repulsion.barnesHut" is not set.
+	 */
+	public WorkerQuadTree getQuadTree() {
+		return quadTree;
+	}
+
+	/**
+	 * @return The coordinate table, or null if "layout.flooding.localTable" is not set.
+	 */
+	public WorkerCoordinateTable getCoordinateTable() {
+		return coordinateTable;
+	}
+
+	/**
+	 * @return The neighbourhood index, or null if "layout.flooding.index" is not set.
+	 */
+	public NeighbourhoodIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return The coordinate cache, or null if "layout.flooding.delta" is not set.
+	 */
+	public CoordinateCache getCoordinateCache() {
+		return coordinateCache;
+	}
+
+	/**
+	 * @return The deduplicator, or null if "layout.flooding.dedup" is not set.
+	 */
+	public MessageDeduplicator getDeduplicator() {
+		return deduplicator;
+	}
+
+}
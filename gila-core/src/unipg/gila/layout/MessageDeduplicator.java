@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class filters, for each worker and superstep, the flooded messages directed to the same target and carrying the same payload,
+ * so that the duplicates are dropped before being serialized. Each (target, payload) pair is reduced to a 64-bit fingerprint; the
+ * fingerprints are kept in an exact set, split into stripes to reduce contention among the compute threads, until the number of stored
+ * pairs reaches the budget set with "layout.flooding.dedup.budget". Further pairs are stored in a Bloom filter of
+ * "layout.flooding.dedup.bloomBits" bits, which uses a bounded amount of memory at the price of some false positives, i.e. of a few
+ * messages dropped without being duplicates.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class MessageDeduplicator {
+
+	protected static final int stripes = 64;
+	protected static final int bloomHashes = 3;
+
+	private final LongOpenHashSet[] exact;
+	private final AtomicInteger exactSize = new AtomicInteger();
+	private final int budget;
+	private final AtomicLongArray bloom;
+	private final long bloomBits;
+	private volatile boolean bloomInUse;
+	private long currentSuperstep = -1;
+
+	protected MessageDeduplicator(int budget, long bloomBits){
+		this.budget = budget;
+		this.bloomBits = Math.max(64, bloomBits);
+		exact = new LongOpenHashSet[stripes];
+		for(int i=0; i<stripes; i++)
+			exact[i] = new LongOpenHashSet();
+		bloom = new AtomicLongArray((int) ((this.bloomBits + 63)/64));
+	}
+
+	/**
+	 * Called by each propagator thread before the superstep; the first call of a new superstep clears the filter.
+	 *
+	 * @param superstep The current superstep.
+	 */
+	public synchronized void beginSuperstep(long superstep){
+		if(currentSuperstep == superstep)
+			return;
+		currentSuperstep = superstep;
+		for(int i=0; i<stripes; i++)
+			synchronized (exact[i]) {
+				exact[i].clear();
+			}
+		exactSize.set(0);
+		if(bloomInUse){
+			for(int i=0; i<bloom.length(); i++)
+				bloom.set(i, 0L);
+			bloomInUse = false;
+		}
+	}
+
+	/**
+	 * Records the given pair and returns true if it was not recorded before during the current superstep.
+	 *
+	 * @param target The id of the target vertex.
+	 * @param payload The id of the payload vertex.
+	 * @return false if the message is a duplicate and can be dropped.
+	 */
+	public boolean firstTime(long target, long payload){
+		long fingerprint = HashCommon.murmurHash3(target*0x9E3779B97F4A7C15L + payload);
+		LongOpenHashSet stripe = exact[(int) (fingerprint >>> 58) & (stripes - 1)];
+		if(!bloomInUse){
+			synchronized (stripe) {
+				if(stripe.contains(fingerprint))
+					return false;
+				if(exactSize.get() < budget){
+					stripe.add(fingerprint);
+					exactSize.incrementAndGet();
+					return true;
+				}
+			}
+			bloomInUse = true;
+		}else{
+			synchronized (stripe) {
+				if(stripe.contains(fingerprint))
+					return false;
+			}
+		}
+		return bloomAdd(fingerprint);
+	}
+
+	/**
+	 * Sets the bits of the fingerprint in the Bloom filter.
+	 *
+	 * @return true if at least one of the bits was not set.
+	 */
+	private boolean bloomAdd(long fingerprint){
+		boolean added = false;
+		long hash = fingerprint;
+		for(int i=0; i<bloomHashes; i++){
+			long bit = (hash & Long.MAX_VALUE) % bloomBits;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << (bit & 63);
+			long old;
+			do{
+				old = bloom.get(word);
+				if((old & mask) != 0)
+					break;
+			}while(!bloom.compareAndSet(word, old, old | mask));
+			if((old & mask) == 0)
+				added = true;
+			hash = HashCommon.murmurHash3(hash);
+		}
+		return added;
+	}
+
+}
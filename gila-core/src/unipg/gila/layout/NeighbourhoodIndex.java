@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This class keeps, for each vertex hosted on the worker, the vertices found within the maximum TTL during the first round of a
+ * layout pass, which works as an index phase. In the following rounds of the pass each vertex sends its coordinates once to all
+ * of them with a single multicast, instead of flooding them hop by hop; when Giraph encodes one message for many ids
+ * ("giraph.messageEncodeAndStoreType" set to EXTRACT_BYTEARRAY_PER_PARTITION) the message is serialized once per destination
+ * worker, which then delivers it locally. Since the graph is undirected, the vertices from which a vertex receives messages are
+ * the same to which it sends its own. The entries are held in a {@link StripedVertexStore}.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class NeighbourhoodIndex extends StripedVertexStore<NeighbourhoodIndex.Entry> {
+
+	NeighbourhoodIndex(){
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.StripedVertexStore#create()
+	 */
+	@Override
+	protected Entry create() {
+		return new Entry();
+	}
+
+	/**
+	 * The vertices found within the maximum TTL from a vertex. Each entry is only used by the thread computing its vertex.
+	 */
+	public static class Entry {
+
+		private final LongArrayList ids = new LongArrayList();
+		private final ShortArrayList partitions = new ShortArrayList();
+		private final LongArrayList neighbourList = new LongArrayList();
+		private long[] neighbours;
+		private final TargetIterator iterator = new TargetIterator();
+
+		/**
+		 * Clears the entry at the beginning of the index phase.
+		 */
+		public void clear(){
+			ids.clear();
+			partitions.clear();
+			neighbourList.clear();
+			neighbours = null;
+		}
+
+		/**
+		 * Records a vertex found at the given distance.
+		 */
+		public void add(long id, short partition, int distance){
+			ids.add(id);
+			partitions.add(partition);
+			if(distance == 1){
+				neighbourList.add(id);
+				neighbours = null;
+			}
+		}
+
+		public int size(){
+			return ids.size();
+		}
+
+		/**
+		 * Returns true if the given vertex was found at distance one.
+		 */
+		public boolean isNeighbour(long id){
+			if(neighbours == null){
+				neighbours = neighbourList.toLongArray();
+				Arrays.sort(neighbours);
+			}
+			return Arrays.binarySearch(neighbours, id) >= 0;
+		}
+
+		/**
+		 * Returns an iterator over the recorded vertices; the iterator and the returned ids are reused, so each id must be
+		 * consumed before requesting the next one, as Giraph does when sending a message.
+		 *
+		 * @param layer The layer of the recorded vertices.
+		 */
+		public Iterator<LayeredPartitionedLongWritable> targets(int layer){
+			iterator.reset(layer);
+			return iterator;
+		}
+
+		private class TargetIterator implements Iterator<LayeredPartitionedLongWritable> {
+
+			private final LayeredPartitionedLongWritable current = new LayeredPartitionedLongWritable();
+			private int position;
+
+			private void reset(int layer){
+				position = 0;
+				current.setLayer(layer);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return position < ids.size();
+			}
+
+			@Override
+			public LayeredPartitionedLongWritable next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				current.setId(ids.getLong(position));
+				current.setPartition(partitions.getShort(position));
+				position++;
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import java.util.Random;
+
+import unipg.gila.common.datastructures.messagetypes.LayoutMessage;
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This class samples the fresh payloads forwarded by a vertex during a superstep, so that at most "layout.flooding.sampleBudget"
+ * of them are propagated. The sample is drawn by priority sampling: each payload gets the priority w/u, where w is its weight and
+ * u is uniform in (0, 1], and the budget payloads with the highest priority are kept in a bounded min-heap, together with the
+ * first one left out. If t is the priority of the latter, each kept payload is included with probability min(1, w/t); its scale is
+ * multiplied by max(1, t/w), i.e. by the inverse of that probability, so that the repulsion computed from the sample is an unbiased
+ * estimate of the one computed from all the payloads.
+ *
+ * Each propagator thread owns an instance, so the slots are reused across vertices without synchronization.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class PayloadReservoir {
+
+	protected final int budget;
+	protected final LayoutMessage[] slots;
+	protected final LayeredPartitionedLongWritable[] payloads;
+	protected final float[] priorities;
+	protected int size;
+	protected int offered;
+	protected final Random random = new Random();
+
+	public PayloadReservoir(int budget){
+		this.budget = budget;
+		slots = new LayoutMessage[budget + 1];
+		payloads = new LayeredPartitionedLongWritable[budget + 1];
+		priorities = new float[budget + 1];
+		for(int i=0; i<=budget; i++){
+			payloads[i] = new LayeredPartitionedLongWritable();
+			slots[i] = new LayoutMessage(payloads[i], new float[2]);
+		}
+	}
+
+	/**
+	 * Offers the propagation of the given message to the sample.
+	 *
+	 * @param message The received message, whose ttl is decreased in the sampled copy.
+	 */
+	public void offer(LayoutMessage message){
+		offered++;
+		float priority = Math.max(1, message.getWeight())/(1.0f - random.nextFloat());
+		int slot;
+		if(size <= budget)
+			slot = size++;
+		else if(priority > priorities[0])
+			slot = 0;
+		else
+			return;
+		LayoutMessage target = message.propagateInto(slots[slot]);
+		LayeredPartitionedLongWritable payload = message.getPayloadVertex();
+		payloads[slot].setId(payload.getId());
+		payloads[slot].setPartition(payload.getPartition());
+		payloads[slot].setLayer(payload.getLayer());
+		target.setPayloadVertex(payloads[slot]);
+		priorities[slot] = priority;
+		if(slot == 0)
+			siftDown(0);
+		else
+			siftUp(slot);
+	}
+
+	/**
+	 * Closes the sample of the current vertex: if more payloads than the budget were offered, the one left out is dropped and the
+	 * scales of the others are rescaled.
+	 *
+	 * @return The number of sampled messages, to be read with {@link #get(int)}.
+	 */
+	public int close(){
+		if(size > budget){
+			float threshold = priorities[0];
+			swap(0, --size);
+			for(int i=0; i<size; i++){
+				LayoutMessage current = slots[i];
+				current.setScale(current.getScale()*Math.max(1.0f, threshold/Math.max(1, current.getWeight())));
+			}
+		}
+		return size;
+	}
+
+	public LayoutMessage get(int i){
+		return slots[i];
+	}
+
+	/**
+	 * @return The number of payloads offered but not sampled since the last call to {@link #clear()}.
+	 */
+	public int droppedPayloads(){
+		return offered - size;
+	}
+
+	public void clear(){
+		size = 0;
+		offered = 0;
+	}
+
+	private void siftUp(int i){
+		while(i > 0){
+			int parent = (i - 1) >>> 1;
+			if(priorities[parent] <= priorities[i])
+				return;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i){
+		while(true){
+			int smallest = i;
+			int left = 2*i + 1;
+			if(left < size && priorities[left] < priorities[smallest])
+				smallest = left;
+			if(left + 1 < size && priorities[left + 1] < priorities[smallest])
+				smallest = left + 1;
+			if(smallest == i)
+				return;
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int i, int j){
+		LayoutMessage slot = slots[i];
+		slots[i] = slots[j];
+		slots[j] = slot;
+		LayeredPartitionedLongWritable payload = payloads[i];
+		payloads[i] = payloads[j];
+		payloads[j] = payload;
+		float priority = priorities[i];
+		priorities[i] = priorities[j];
+		priorities[j] = priority;
+	}
+
+}
@@ -0,0 +1,543 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.AbstractLongComparator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import org.apache.giraph.aggregators.IntMaxAggregator;
+import org.apache.giraph.aggregators.LongSumAggregator;
+import org.apache.giraph.comm.WorkerClientRequestProcessor;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.AbstractComputation;
+import org.apache.giraph.graph.GraphState;
+import org.apache.giraph.graph.GraphTaskManager;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.master.MasterCompute;
+import org.apache.giraph.worker.WorkerContext;
+import org.apache.giraph.worker.WorkerGlobalCommUsage;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.log4j.Logger;
+
+import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentFloatArraySumAggregator;
+import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentLongSetUnionAggregator;
+import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentMapOverwriteAggregator;
+import unipg.gila.common.coordinatewritables.CoordinateWritable;
+import unipg.gila.common.datastructures.FloatWritableArray;
+import unipg.gila.common.datastructures.LongWritableSet;
+import unipg.gila.common.datastructures.messagetypes.PivotMessage;
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This class computes an initial placement of the vertices using pivot-MDS (Brandes and Pich), to be used in place of the random one.
+ * It works as follows, for each connected component:
+ *
+ * = NOMINATION: a pseudo-random sample of at most "layout.pivotMDS.pivots" vertices is chosen as pivots.
+ * = VISIT: simultaneous breadth first visits from all the pivots compute the distance of each vertex from each pivot.
+ * = CENTERING: the column means of the squared distances matrix are aggregated.
+ * = COVARIANCE: the p x p matrix C'C of the double centered distances is aggregated; the master extracts its two main eigenvectors.
+ * = PROJECTION: each vertex projects its row of C onto the eigenvectors, obtaining its coordinates.
+ *
+ * Components with fewer than three pivots keep their current coordinates.
+ *
+ * @author Alessio Arleo
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class PivotMDSRoutine {
+
+	//LOGGER
+	Logger log = Logger.getLogger(this.getClass());
+
+	//PIVOT-MDS OPTIONS
+	public static final String pivotMDSString = "layout.pivotMDS";
+	public static final String pivotsString = "layout.pivotMDS.pivots";
+	public static final String tempFactorBoostString = "layout.pivotMDS.tempFactorBoost";
+	public static final int pivotsDefault = 50;
+	public static final float tempFactorBoostDefault = 4.0f;
+
+	//AGGREGATORS
+	public static final String phaseAggregator = "AGG_PIVOT_PHASE";
+	public static final String candidatesAggregator = "AGG_PIVOT_CANDIDATES";
+	public static final String pivotsAggregator = "AGG_PIVOTS";
+	public static final String updatesAggregator = "AGG_PIVOT_UPDATES";
+	public static final String columnSumsAggregator = "AGG_PIVOT_COLUMN_SUMS";
+	public static final String centeringAggregator = "AGG_PIVOT_CENTERING";
+	public static final String covarianceAggregator = "AGG_PIVOT_COVARIANCE";
+	public static final String projectionAggregator = "AGG_PIVOT_PROJECTION";
+
+	//PHASES
+	public static final int NOMINATION = 0;
+	public static final int VISIT = 1;
+	public static final int CENTERING = 2;
+	public static final int COVARIANCE = 3;
+	public static final int PROJECTION = 4;
+	protected static final int IDLE = -1;
+
+	protected static final int powerIterations = 100;
+
+	//COUNTERS
+	protected static final String COUNTER_GROUP = "Pivot-MDS Counters";
+
+	//INSTANCE VARIABLES
+	protected MasterCompute master;
+	protected Class<? extends PivotMDSComputation> computation;
+	protected int pivots;
+	protected int phase;
+	protected long visitStart;
+
+	public void initialize(MasterCompute myMaster, Class<? extends PivotMDSComputation> computation)
+			throws InstantiationException, IllegalAccessException {
+		master = myMaster;
+		this.computation = computation;
+		pivots = master.getConf().getInt(pivotsString, pivotsDefault);
+		phase = IDLE;
+
+		master.registerPersistentAggregator(phaseAggregator, IntMaxAggregator.class);
+		master.registerPersistentAggregator(pivotsAggregator, ComponentMapOverwriteAggregator.class);
+		master.registerPersistentAggregator(centeringAggregator, ComponentMapOverwriteAggregator.class);
+		master.registerPersistentAggregator(projectionAggregator, ComponentMapOverwriteAggregator.class);
+
+		master.registerAggregator(candidatesAggregator, ComponentLongSetUnionAggregator.class);
+		master.registerAggregator(updatesAggregator, LongSumAggregator.class);
+		master.registerAggregator(columnSumsAggregator, ComponentFloatArraySumAggregator.class);
+		master.registerAggregator(covarianceAggregator, ComponentFloatArraySumAggregator.class);
+	}
+
+	/**
+	 * The main master compute method.
+	 *
+	 * @return true when the placement has been computed.
+	 */
+	public boolean compute(){
+		switch(phase){
+		case IDLE :
+			moveTo(NOMINATION);
+			return false;
+		case NOMINATION :
+			selectPivots();
+			visitStart = master.getSuperstep();
+			moveTo(VISIT);
+			return false;
+		case VISIT :
+			if(((LongWritable)master.getAggregatedValue(updatesAggregator)).get() > 0)
+				return false;
+			master.getContext().getCounter(COUNTER_GROUP, "Visit supersteps").increment(master.getSuperstep() - visitStart);
+			moveTo(CENTERING);
+			return false;
+		case CENTERING :
+			computeCentering();
+			moveTo(COVARIANCE);
+			return false;
+		case COVARIANCE :
+			computeProjection();
+			moveTo(PROJECTION);
+			return false;
+		default :
+			phase = IDLE;
+			master.setAggregatedValue(pivotsAggregator, new MapWritable());
+			master.setAggregatedValue(centeringAggregator, new MapWritable());
+			master.setAggregatedValue(projectionAggregator, new MapWritable());
+			return true;
+		}
+	}
+
+	private void moveTo(int newPhase){
+		phase = newPhase;
+		master.setAggregatedValue(phaseAggregator, new IntWritable(phase));
+		master.setComputation(computation);
+	}
+
+	/**
+	 * For each component, keeps the nominated vertices with the lowest hashes and assigns them their pivot index.
+	 */
+	private void selectPivots(){
+		MapWritable candidates = master.getAggregatedValue(candidatesAggregator);
+		MapWritable selected = new MapWritable();
+		for(Writable current : candidates.values()){
+			long[] componentPivots = lowestHashes(toArray((LongWritableSet) current), pivots);
+			for(int i=0; i<componentPivots.length; i++)
+				selected.put(new LongWritable(componentPivots[i]), new IntWritable(i));
+		}
+		master.getContext().getCounter(COUNTER_GROUP, "Pivots").increment(selected.size());
+		master.setAggregatedValue(pivotsAggregator, selected);
+	}
+
+	/**
+	 * Turns the column sums of the squared distances into the column means; the last element holds the grand mean.
+	 */
+	private void computeCentering(){
+		MapWritable sums = master.getAggregatedValue(columnSumsAggregator);
+		MapWritable centering = new MapWritable();
+		for(Entry<Writable, Writable> current : sums.entrySet()){
+			float[] columnSums = ((FloatWritableArray)current.getValue()).get();
+			int p = columnSums.length - 1;
+			float count = columnSums[p];
+			float[] means = new float[p + 1];
+			for(int j=0; j<p; j++){
+				means[j] = columnSums[j]/count;
+				means[p] += means[j]/p;
+			}
+			centering.put(current.getKey(), new FloatWritableArray(means));
+		}
+		master.setAggregatedValue(centeringAggregator, centering);
+	}
+
+	/**
+	 * Extracts the two main eigenvectors of the aggregated C'C matrix of each component and broadcasts them one after the other.
+	 */
+	private void computeProjection(){
+		MapWritable covariances = master.getAggregatedValue(covarianceAggregator);
+		MapWritable projection = new MapWritable();
+		for(Entry<Writable, Writable> current : covariances.entrySet()){
+			float[] flat = ((FloatWritableArray)current.getValue()).get();
+			int p = (int) Math.round(Math.sqrt(flat.length));
+			double[][] matrix = new double[p][p];
+			for(int i=0; i<p; i++)
+				for(int j=0; j<p; j++)
+					matrix[i][j] = flat[i*p + j];
+			double[] first = new double[p];
+			double[] second = new double[p];
+			double firstEigenvalue = powerIteration(matrix, first);
+			//DEFLATION
+			for(int i=0; i<p; i++)
+				for(int j=0; j<p; j++)
+					matrix[i][j] -= firstEigenvalue*first[i]*first[j];
+			powerIteration(matrix, second);
+			float[] vectors = new float[2*p];
+			for(int i=0; i<p; i++){
+				vectors[i] = (float) first[i];
+				vectors[p + i] = (float) second[i];
+			}
+			projection.put(current.getKey(), new FloatWritableArray(vectors));
+		}
+		master.setAggregatedValue(projectionAggregator, projection);
+	}
+
+	/**
+	 * Computes the main eigenvector of a symmetric positive semidefinite matrix.
+	 *
+	 * @param matrix The matrix.
+	 * @param result The array to store the normalized eigenvector into.
+	 * @return The related eigenvalue.
+	 */
+	protected static double powerIteration(double[][] matrix, double[] result){
+		int p = result.length;
+		double[] next = new double[p];
+		for(int i=0; i<p; i++)
+			result[i] = 1.0/Math.sqrt(p) + (i % 2 == 0 ? 1e-3 : -1e-3);
+		double eigenvalue = 0;
+		for(int iteration=0; iteration<powerIterations; iteration++){
+			Arrays.fill(next, 0);
+			for(int i=0; i<p; i++)
+				for(int j=0; j<p; j++)
+					next[i] += matrix[i][j]*result[j];
+			double norm = 0;
+			for(int i=0; i<p; i++)
+				norm += next[i]*next[i];
+			norm = Math.sqrt(norm);
+			if(norm == 0)
+				return 0;
+			eigenvalue = norm;
+			for(int i=0; i<p; i++)
+				result[i] = next[i]/norm;
+		}
+		return eigenvalue;
+	}
+
+	private static long[] toArray(LongWritableSet set){
+		long[] result = new long[set.size()];
+		int i = 0;
+		Iterator<? extends Writable> it = set.iterator();
+		while(it.hasNext())
+			result[i++] = ((LongWritable)it.next()).get();
+		return result;
+	}
+
+	/**
+	 * Sorts the given ids by their hash (and then by their value) and returns at most the first max ones. Using the hash instead of the
+	 * id makes the selection a pseudo-random sample which is the same on every worker and on the master.
+	 */
+	protected static long[] lowestHashes(long[] ids, int max){
+		LongArrays.quickSort(ids, new AbstractLongComparator() {
+			public int compare(long a, long b) {
+				long ha = HashCommon.murmurHash3(a);
+				long hb = HashCommon.murmurHash3(b);
+				if(ha != hb)
+					return ha < hb ? -1 : 1;
+				return a < b ? -1 : (a == b ? 0 : 1);
+			}
+		});
+		return ids.length <= max ? ids : Arrays.copyOf(ids, max);
+	}
+
+	/**
+	 * This computation performs the phase broadcast by the master. Subclasses may restrict the vertices and the edges taken into account
+	 * and define the length of each edge (1 by default).
+	 *
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class PivotMDSComputation<V extends CoordinateWritable, E extends IntWritable>
+		extends AbstractComputation<LayeredPartitionedLongWritable, V, E, PivotMessage, PivotMessage>{
+
+		protected int phase;
+		protected int pivots;
+		protected MapWritable pivotsMap;
+		protected MapWritable centeringMap;
+		protected MapWritable projectionMap;
+
+		//THREAD-LOCAL PRE-REDUCTIONS, AGGREGATED ONCE IN POSTSUPERSTEP
+		protected Int2ObjectOpenHashMap<LongArrayList> candidates;
+		protected Int2ObjectOpenHashMap<double[]> sums;
+		protected long updates;
+
+		//REUSABLE BUFFERS
+		protected final LongWritable probe = new LongWritable();
+		protected final PivotMessage toSend = new PivotMessage();
+		protected final IntArrayList improved = new IntArrayList();
+		protected float[] centered;
+
+		@Override
+		public void compute(Vertex<LayeredPartitionedLongWritable, V, E> vertex, Iterable<PivotMessage> messages) throws IOException {
+			switch(phase){
+			case NOMINATION : nominate(vertex); break;
+			case VISIT : visit(vertex, messages); break;
+			case CENTERING : aggregateColumns(vertex); break;
+			case COVARIANCE : aggregateCovariance(vertex); break;
+			case PROJECTION : project(vertex); break;
+			}
+		}
+
+		protected void nominate(Vertex<LayeredPartitionedLongWritable, V, E> vertex){
+			int[] distances = new int[pivots];
+			Arrays.fill(distances, Integer.MAX_VALUE);
+			vertex.getValue().setPivotDistances(distances);
+			int component = vertex.getValue().getComponent();
+			LongArrayList componentCandidates = candidates.get(component);
+			if(componentCandidates == null){
+				componentCandidates = new LongArrayList();
+				candidates.put(component, componentCandidates);
+			}
+			componentCandidates.add(vertex.getId().getId());
+		}
+
+		protected void visit(Vertex<LayeredPartitionedLongWritable, V, E> vertex, Iterable<PivotMessage> messages){
+			int[] distances = vertex.getValue().getPivotDistances();
+			improved.clear();
+			probe.set(vertex.getId().getId());
+			IntWritable pivotIndex = (IntWritable) pivotsMap.get(probe);
+			if(pivotIndex != null && distances[pivotIndex.get()] == Integer.MAX_VALUE){
+				distances[pivotIndex.get()] = 0;
+				improved.add(pivotIndex.get());
+			}
+			for(PivotMessage current : messages){
+				int pivot = current.getPayloadVertex();
+				if(current.getValue() < distances[pivot]){
+					if(!improved.contains(pivot))
+						improved.add(pivot);
+					distances[pivot] = current.getValue();
+				}
+			}
+			if(improved.isEmpty())
+				return;
+			updates += improved.size();
+			for(Edge<LayeredPartitionedLongWritable, E> edge : vertex.getEdges()){
+				if(!isVisitable(edge))
+					continue;
+				int length = edgeLength(edge);
+				for(int i=0; i<improved.size(); i++){
+					int pivot = improved.getInt(i);
+					toSend.setPayloadVertex(pivot);
+					toSend.setValue(distances[pivot] + length);
+					sendMessage(edge.getTargetVertexId(), toSend);
+				}
+			}
+		}
+
+		protected void aggregateColumns(Vertex<LayeredPartitionedLongWritable, V, E> vertex){
+			int[] distances = vertex.getValue().getPivotDistances();
+			int p = reachedPivots(distances);
+			if(p == 0)
+				return;
+			int component = vertex.getValue().getComponent();
+			double[] componentSums = sums.get(component);
+			if(componentSums == null){
+				componentSums = new double[p + 1];
+				sums.put(component, componentSums);
+			}
+			for(int j=0; j<p; j++)
+				componentSums[j] += (double) distances[j]*distances[j];
+			componentSums[p]++;
+		}
+
+		protected void aggregateCovariance(Vertex<LayeredPartitionedLongWritable, V, E> vertex){
+			int p = center(vertex);
+			if(p == 0)
+				return;
+			int component = vertex.getValue().getComponent();
+			double[] componentSums = sums.get(component);
+			if(componentSums == null){
+				componentSums = new double[p*p];
+				sums.put(component, componentSums);
+			}
+			for(int i=0; i<p; i++)
+				for(int j=0; j<p; j++)
+					componentSums[i*p + j] += centered[i]*centered[j];
+		}
+
+		protected void project(Vertex<LayeredPartitionedLongWritable, V, E> vertex){
+			int p = center(vertex);
+			vertex.getValue().setPivotDistances(null);
+			if(p < 3)
+				return;
+			FloatWritableArray vectors = (FloatWritableArray) projectionMap.get(new IntWritable(vertex.getValue().getComponent()));
+			if(vectors == null)
+				return;
+			float[] v = vectors.get();
+			float x = 0;
+			float y = 0;
+			for(int j=0; j<p; j++){
+				x += centered[j]*v[j];
+				y += centered[j]*v[p + j];
+			}
+			vertex.getValue().setCoordinates(x, y);
+		}
+
+		/**
+		 * Fills the centered buffer with the double centered squared distances of the vertex.
+		 *
+		 * @return The number of pivots of the component of the vertex, or 0 if the centering data is not available.
+		 */
+		protected int center(Vertex<LayeredPartitionedLongWritable, V, E> vertex){
+			int[] distances = vertex.getValue().getPivotDistances();
+			if(distances == null)
+				return 0;
+			FloatWritableArray centering = (FloatWritableArray) centeringMap.get(new IntWritable(vertex.getValue().getComponent()));
+			int p = reachedPivots(distances);
+			if(centering == null || p == 0 || centering.get().length != p + 1)
+				return 0;
+			float[] means = centering.get();
+			float rowMean = 0;
+			for(int j=0; j<p; j++)
+				rowMean += (float) distances[j]*distances[j]/p;
+			for(int j=0; j<p; j++)
+				centered[j] = -0.5f*((float) distances[j]*distances[j] - means[j] - rowMean + means[p]);
+			return p;
+		}
+
+		/**
+		 * Pivot indices are assigned per component starting from 0, so the reached pivots are always the first ones.
+		 */
+		protected int reachedPivots(int[] distances){
+			int p = 0;
+			while(p < distances.length && distances[p] != Integer.MAX_VALUE)
+				p++;
+			return p;
+		}
+
+		/**
+		 * @return true if the target of the edge takes part in the placement.
+		 */
+		protected boolean isVisitable(Edge<LayeredPartitionedLongWritable, E> edge){
+			return true;
+		}
+
+		/**
+		 * @return The length of the edge used by the visits.
+		 */
+		protected int edgeLength(Edge<LayeredPartitionedLongWritable, E> edge){
+			return 1;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.apache.giraph.graph.AbstractComputation#initialize(org.apache.giraph.graph.GraphState, org.apache.giraph.comm.WorkerClientRequestProcessor, org.apache.giraph.graph.GraphTaskManager, org.apache.giraph.worker.WorkerGlobalCommUsage, org.apache.giraph.worker.WorkerContext)
+		 */
+		@Override
+		public void initialize(GraphState graphState,
+				WorkerClientRequestProcessor<LayeredPartitionedLongWritable, V, E> workerClientRequestProcessor,
+				GraphTaskManager<LayeredPartitionedLongWritable, V, E> graphTaskManager,
+				WorkerGlobalCommUsage workerGlobalCommUsage,
+				WorkerContext workerContext) {
+			super.initialize(graphState, workerClientRequestProcessor, graphTaskManager,
+					workerGlobalCommUsage, workerContext);
+			phase = ((IntWritable)getAggregatedValue(phaseAggregator)).get();
+			pivots = getConf().getInt(pivotsString, pivotsDefault);
+			pivotsMap = getAggregatedValue(pivotsAggregator);
+			centeringMap = getAggregatedValue(centeringAggregator);
+			projectionMap = getAggregatedValue(projectionAggregator);
+			candidates = new Int2ObjectOpenHashMap<LongArrayList>();
+			sums = new Int2ObjectOpenHashMap<double[]>();
+			updates = 0;
+			centered = new float[pivots];
+		}
+
+		/* (non-Javadoc)
+		 * @see org.apache.giraph.graph.AbstractComputation#postSuperstep()
+		 */
+		@Override
+		public void postSuperstep() {
+			super.postSuperstep();
+			switch(phase){
+			case NOMINATION :
+				MapWritable nominated = new MapWritable();
+				for(Int2ObjectMap.Entry<LongArrayList> current : candidates.int2ObjectEntrySet()){
+					LongWritableSet set = new LongWritableSet();
+					for(long id : lowestHashes(current.getValue().toLongArray(), pivots))
+						set.addElement(new LongWritable(id));
+					nominated.put(new IntWritable(current.getIntKey()), set);
+				}
+				aggregate(candidatesAggregator, nominated);
+				break;
+			case VISIT :
+				aggregate(updatesAggregator, new LongWritable(updates));
+				break;
+			case CENTERING :
+				aggregate(columnSumsAggregator, toMap(sums));
+				break;
+			case COVARIANCE :
+				aggregate(covarianceAggregator, toMap(sums));
+				break;
+			}
+		}
+
+		private MapWritable toMap(Int2ObjectOpenHashMap<double[]> values){
+			MapWritable result = new MapWritable();
+			for(Int2ObjectMap.Entry<double[]> current : values.int2ObjectEntrySet()){
+				double[] value = current.getValue();
+				float[] converted = new float[value.length];
+				for(int i=0; i<value.length; i++)
+					converted[i] = (float) value[i];
+				result.put(new IntWritable(current.getIntKey()), new FloatWritableArray(converted));
+			}
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This class is the base of the worker stores which keep some data for each vertex hosted on the worker outside of its value, so
+ * that it is neither serialized nor checkpointed. A vertex is computed by a single thread in each superstep, but vertices are not
+ * bound to threads across supersteps; for this reason the entries are held at worker level, in maps keyed by vertex id and split
+ * into stripes to reduce contention among the compute threads. Each entry is only used by the thread computing its vertex. Since
+ * the stores are shared by all the threads of a worker they are owned by its {@link LayoutWorkerContext}.
+ *
+ * Only one layer is laid out at a time, and the ids of the vertices are repeated across layers; the store keeps the entries of a
+ * single layer, and all of them are released when a vertex of another layer is looked up. Single entries are released with
+ * {@link #remove(LayeredPartitionedLongWritable)}.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public abstract class StripedVertexStore<T> {
+
+	protected static final int stripes = 64;
+
+	private final Long2ObjectOpenHashMap<T>[] entries;
+	private volatile int layer = Integer.MIN_VALUE;
+
+	@SuppressWarnings("unchecked")
+	protected StripedVertexStore(){
+		entries = (Long2ObjectOpenHashMap<T>[]) new Long2ObjectOpenHashMap<?>[stripes];
+		for(int i=0; i<stripes; i++)
+			entries[i] = new Long2ObjectOpenHashMap<T>();
+	}
+
+	/**
+	 * Creates the entry of a vertex looked up for the first time.
+	 */
+	protected abstract T create();
+
+	/**
+	 * Returns the entry of the given vertex, creating it if needed.
+	 *
+	 * @param vertexId The id of the vertex.
+	 */
+	public T get(LayeredPartitionedLongWritable vertexId){
+		if(vertexId.getLayer() != layer)
+			changeLayer(vertexId.getLayer());
+		Long2ObjectOpenHashMap<T> stripe = stripeOf(vertexId.getId());
+		synchronized (stripe) {
+			T entry = stripe.get(vertexId.getId());
+			if(entry == null){
+				entry = create();
+				stripe.put(vertexId.getId(), entry);
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Releases the entry of the given vertex, if it belongs to the layer currently stored.
+	 *
+	 * @param vertexId The id of the vertex.
+	 */
+	public void remove(LayeredPartitionedLongWritable vertexId){
+		if(vertexId.getLayer() != layer)
+			return;
+		Long2ObjectOpenHashMap<T> stripe = stripeOf(vertexId.getId());
+		synchronized (stripe) {
+			stripe.remove(vertexId.getId());
+		}
+	}
+
+	/**
+	 * Releases all the entries.
+	 */
+	public void clear(){
+		for(Long2ObjectOpenHashMap<T> stripe : entries)
+			synchronized (stripe) {
+				stripe.clear();
+				stripe.trim();
+			}
+	}
+
+	private synchronized void changeLayer(int newLayer){
+		if(newLayer == layer)
+			return;
+		clear();
+		layer = newLayer;
+	}
+
+	private Long2ObjectOpenHashMap<T> stripeOf(long vertexId){
+		return entries[(int) (HashCommon.murmurHash3(vertexId) >>> 58) & (stripes - 1)];
+	}
+
+}
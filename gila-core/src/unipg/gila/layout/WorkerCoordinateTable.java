@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import unipg.gila.common.multi.LayeredPartitionedLongWritable;
+
+/**
+ * This class holds, for each worker, a read-only table of the coordinates, weights and local adjacencies of the vertices it hosts.
+ * At each seeding round the seeder threads publish their vertices; at the first propagator superstep the table is built once and
+ * then queried concurrently by the propagator threads, which resolve the k-hop neighbours hosted on the same worker without
+ * exchanging messages. The table of the last round is kept until a new one is built, so that the seeders can skip the
+ * neighbours known to be local.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class WorkerCoordinateTable {
+
+	private long pendingSuperstep = -1;
+	private CoordinateBuffer pending = new CoordinateBuffer();
+	private long readySuperstep = -1;
+	private CoordinateBuffer ready;
+	private long builtSuperstep = -1;
+
+	private Long2IntOpenHashMap index = new Long2IntOpenHashMap();
+	private long[] ids = new long[0];
+	private short[] partitions = new short[0];
+	private int[] layers = new int[0];
+	private float[] xs = new float[0];
+	private float[] ys = new float[0];
+	private int[] weights = new int[0];
+	private boolean[] remoteNeighbours = new boolean[0];
+	private int[] neighbourStart = new int[1];
+	private int[] neighbours = new int[0];
+
+	WorkerCoordinateTable(){
+		index.defaultReturnValue(-1);
+	}
+
+	/**
+	 * Called by each seeder thread before the seeding superstep; the first call of a new round starts collecting new data, while
+	 * the data of the previous round is kept until it is built.
+	 *
+	 * @param superstep The current superstep.
+	 */
+	public synchronized void beginRound(long superstep){
+		if(pendingSuperstep == superstep)
+			return;
+		if(pendingSuperstep > builtSuperstep){
+			ready = pending;
+			readySuperstep = pendingSuperstep;
+		}
+		pending = new CoordinateBuffer();
+		pendingSuperstep = superstep;
+	}
+
+	/**
+	 * Merges the data collected by a seeder thread into the worker data.
+	 *
+	 * @param buffer The thread-local buffer, which is cleared afterwards.
+	 */
+	public synchronized void publish(CoordinateBuffer buffer){
+		pending.addAll(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Builds the table from the latest data published before the given superstep, if not already done. The adjacencies are
+	 * resolved to table indices; neighbours which were not published on this worker are only recorded with a flag.
+	 *
+	 * @param superstep The current superstep.
+	 */
+	public synchronized void build(long superstep){
+		CoordinateBuffer source = pendingSuperstep < superstep ? pending : ready;
+		long sourceSuperstep = pendingSuperstep < superstep ? pendingSuperstep : readySuperstep;
+		if(source == null || sourceSuperstep <= builtSuperstep)
+			return;
+		int n = source.size();
+		Long2IntOpenHashMap newIndex = new Long2IntOpenHashMap(n);
+		newIndex.defaultReturnValue(-1);
+		for(int i=0; i<n; i++)
+			newIndex.put(source.ids.getLong(i), i);
+		ids = source.ids.toLongArray();
+		partitions = new short[n];
+		layers = source.layers.toIntArray();
+		xs = source.xs.toFloatArray();
+		ys = source.ys.toFloatArray();
+		weights = source.weights.toIntArray();
+		remoteNeighbours = new boolean[n];
+		neighbourStart = new int[n + 1];
+		IntArrayList resolved = new IntArrayList(source.neighbourIds.size());
+		int offset = 0;
+		for(int i=0; i<n; i++){
+			partitions[i] = (short) source.partitions.getInt(i);
+			neighbourStart[i] = resolved.size();
+			int degree = source.neighbourCounts.getInt(i);
+			for(int j=offset; j<offset + degree; j++){
+				int neighbour = newIndex.get(source.neighbourIds.getLong(j));
+				if(neighbour == -1)
+					remoteNeighbours[i] = true;
+				else
+					resolved.add(neighbour);
+			}
+			offset += degree;
+		}
+		neighbourStart[n] = resolved.size();
+		neighbours = resolved.toIntArray();
+		index = newIndex;
+		builtSuperstep = sourceSuperstep;
+		ready = null;
+		if(source == pending){
+			pending = new CoordinateBuffer();
+			pendingSuperstep = -1;
+		}
+	}
+
+	/**
+	 * Returns the index of the vertex with the given id, or -1 if it was not published on this worker.
+	 */
+	public int indexOf(long id){
+		return index.get(id);
+	}
+
+	/**
+	 * Returns true if the given vertex was published on this worker during the last built round; the layer is checked too, since
+	 * the table of a previous layer may still be in place.
+	 */
+	public boolean isLocal(LayeredPartitionedLongWritable id){
+		int i = index.get(id.getId());
+		return i != -1 && layers[i] == id.getLayer();
+	}
+
+	public int size(){
+		return ids.length;
+	}
+
+	public long getId(int i){
+		return ids[i];
+	}
+
+	public short getPartition(int i){
+		return partitions[i];
+	}
+
+	public int getLayer(int i){
+		return layers[i];
+	}
+
+	public float getX(int i){
+		return xs[i];
+	}
+
+	public float getY(int i){
+		return ys[i];
+	}
+
+	public int getWeight(int i){
+		return weights[i];
+	}
+
+	/**
+	 * Returns true if at least one of the neighbours of the given vertex is hosted on another worker.
+	 */
+	public boolean hasRemoteNeighbours(int i){
+		return remoteNeighbours[i];
+	}
+
+	/**
+	 * Returns the position of the first local neighbour of the given vertex, to be used with {@link #getNeighbour(int)}.
+	 */
+	public int getNeighbourStart(int i){
+		return neighbourStart[i];
+	}
+
+	/**
+	 * Returns the position after the last local neighbour of the given vertex.
+	 */
+	public int getNeighbourEnd(int i){
+		return neighbourStart[i + 1];
+	}
+
+	public int getNeighbour(int position){
+		return neighbours[position];
+	}
+
+	/**
+	 * A primitive buffer of vertex data; the neighbours of each vertex are stored contiguously.
+	 */
+	public static class CoordinateBuffer {
+
+		protected LongArrayList ids = new LongArrayList();
+		protected IntArrayList partitions = new IntArrayList();
+		protected IntArrayList layers = new IntArrayList();
+		protected FloatArrayList xs = new FloatArrayList();
+		protected FloatArrayList ys = new FloatArrayList();
+		protected IntArrayList weights = new IntArrayList();
+		protected IntArrayList neighbourCounts = new IntArrayList();
+		protected LongArrayList neighbourIds = new LongArrayList();
+
+		/**
+		 * Adds a vertex; its neighbours must be added right after with {@link #addNeighbour(long)}.
+		 */
+		public void add(long id, int partition, int layer, float x, float y, int weight){
+			ids.add(id);
+			partitions.add(partition);
+			layers.add(layer);
+			xs.add(x);
+			ys.add(y);
+			weights.add(weight);
+			neighbourCounts.add(0);
+		}
+
+		/**
+		 * Adds a neighbour to the last added vertex.
+		 */
+		public void addNeighbour(long id){
+			neighbourIds.add(id);
+			int last = neighbourCounts.size() - 1;
+			neighbourCounts.set(last, neighbourCounts.getInt(last) + 1);
+		}
+
+		protected void addAll(CoordinateBuffer buffer){
+			ids.addAll(buffer.ids);
+			partitions.addAll(buffer.partitions);
+			layers.addAll(buffer.layers);
+			xs.addAll(buffer.xs);
+			ys.addAll(buffer.ys);
+			weights.addAll(buffer.weights);
+			neighbourCounts.addAll(buffer.neighbourCounts);
+			neighbourIds.addAll(buffer.neighbourIds);
+		}
+
+		public int size(){
+			return ids.size();
+		}
+
+		public void clear(){
+			ids.clear();
+			partitions.clear();
+			layers.clear();
+			xs.clear();
+			ys.clear();
+			weights.clear();
+			neighbourCounts.clear();
+			neighbourIds.clear();
+		}
+	}
+
+}
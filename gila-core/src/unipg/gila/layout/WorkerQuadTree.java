@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.Iterator;
+
+import unipg.gila.layout.force.Force;
+
+/**
+ * This class holds, for each worker, a Barnes-Hut quadtree for every connected component hosted on it. At each seeding
+ * round the seeder threads publish the updated coordinates of their vertices; at the first propagator superstep the trees
+ * are built once and then queried concurrently by the propagator threads, so that each vertex receives the repulsive forces
+ * exerted by the whole local population in O(log n).
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class WorkerQuadTree {
+
+	/**
+	 * The maximum number of vertices stored in a leaf.
+	 */
+	protected static final int leafCapacity = 8;
+	/**
+	 * The maximum depth of a tree; vertices sharing the same coordinates are kept in a single leaf.
+	 */
+	protected static final int maxDepth = 24;
+
+	private PublishedRound pending = new PublishedRound(-1);
+	private PublishedRound ready;
+	private long builtSuperstep = -1;
+	private Int2ObjectOpenHashMap<ComponentTree> trees = new Int2ObjectOpenHashMap<ComponentTree>();
+	private LongOpenHashSet localVertices = new LongOpenHashSet();
+	private IntOpenHashSet localPartitions = new IntOpenHashSet();
+
+	/**
+	 * Called by each seeder thread before the seeding superstep; the first call of a new round starts collecting new positions.
+	 * The positions of the previous round are kept until they are built, since when seeding and propagation are fused some
+	 * threads may still have to build them.
+	 *
+	 * @param superstep The current superstep.
+	 */
+	public synchronized void beginRound(long superstep){
+		if(pending.superstep == superstep)
+			return;
+		if(pending.superstep > builtSuperstep)
+			ready = pending;
+		pending = new PublishedRound(superstep);
+	}
+
+	/**
+	 * Merges the positions collected by a seeder thread into the worker data.
+	 *
+	 * @param buffer The thread-local buffer, which is cleared afterwards.
+	 */
+	public synchronized void publish(PositionBuffer buffer){
+		for(int i=0; i<buffer.size(); i++){
+			int component = buffer.components.getInt(i);
+			PositionBuffer target = pending.buffers.get(component);
+			if(target == null){
+				target = new PositionBuffer();
+				pending.buffers.put(component, target);
+			}
+			target.add(buffer.ids.getLong(i), buffer.partitions.getInt(i), component, buffer.xs.getFloat(i), buffer.ys.getFloat(i), buffer.weights.getInt(i));
+			pending.vertices.add(buffer.ids.getLong(i));
+			pending.partitions.add(buffer.partitions.getInt(i));
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Builds the trees from the latest positions published before the given superstep, if not already done.
+	 *
+	 * @param superstep The current superstep.
+	 */
+	public synchronized void build(long superstep){
+		PublishedRound source = pending.superstep < superstep ? pending : ready;
+		if(source == null || source.superstep <= builtSuperstep)
+			return;
+		Int2ObjectOpenHashMap<ComponentTree> newTrees = new Int2ObjectOpenHashMap<ComponentTree>();
+		Iterator<Int2ObjectMap.Entry<PositionBuffer>> it = source.buffers.int2ObjectEntrySet().iterator();
+		while(it.hasNext()){
+			Int2ObjectMap.Entry<PositionBuffer> current = it.next();
+			newTrees.put(current.getIntKey(), new ComponentTree(current.getValue()));
+		}
+		trees = newTrees;
+		localVertices = source.vertices;
+		localPartitions = source.partitions;
+		builtSuperstep = source.superstep;
+		ready = null;
+		if(source == pending)
+			pending = new PublishedRound(-1);
+	}
+
+	/**
+	 * Returns true if the vertex with the given id was published on this worker during the last built round.
+	 */
+	public boolean isLocal(long id){
+		return localVertices.contains(id);
+	}
+
+	/**
+	 * Returns true if at least a vertex of the given partition was published on this worker during the last built round.
+	 */
+	public boolean hostsPartition(int partition){
+		return localPartitions.contains(partition);
+	}
+
+	/**
+	 * Accumulates into the given array the repulsive forces exerted on a vertex by all the other vertices of its component
+	 * hosted on this worker, using the Barnes-Hut approximation. The cells containing the vertex are always opened, so that its
+	 * own mass is never part of an approximated cell and the vertex is skipped by id in its leaf.
+	 *
+	 * @param id The id of the vertex, which is skipped.
+	 * @param component The component of the vertex.
+	 * @param x The X coordinate of the vertex.
+	 * @param y The Y coordinate of the vertex.
+	 * @param weight The weight of the vertex.
+	 * @param force The force model.
+	 * @param theta The opening criterion: a cell is approximated when its side divided by its distance is below theta.
+	 * @param stack A caller-owned scratch stack.
+	 * @param temp A caller-owned scratch array of size 2.
+	 * @param accumulator The array to which the force components are added.
+	 */
+	public void accumulateRepulsiveForce(long id, int component, float x, float y, int weight, Force force, float theta,
+			IntArrayList stack, float[] temp, float[] accumulator){
+		ComponentTree tree = trees.get(component);
+		if(tree != null)
+			tree.accumulateRepulsiveForce(id, x, y, weight, force, theta, stack, temp, accumulator);
+	}
+
+	/**
+	 * Accumulates the repulsive force exerted by a group of vertices with the given multiplicity, all assumed to lie at the
+	 * given displacement and to have the given weight.
+	 */
+	protected static void accumulateScaled(float deltaX, float deltaY, float squareDistance, int v1Deg, int v2Deg, int multiplicity,
+			Force force, float[] temp, float[] accumulator){
+		float fuzzySquareDistance = squareDistance == 0.0f ? 0.00001f : squareDistance;
+		temp[0] = 0.0f;
+		temp[1] = 0.0f;
+		force.accumulateRepulsiveForce(deltaX, deltaY, (float) Math.sqrt(fuzzySquareDistance), fuzzySquareDistance, v1Deg, v2Deg, temp);
+		accumulator[0] += temp[0]*multiplicity;
+		accumulator[1] += temp[1]*multiplicity;
+	}
+
+	/**
+	 * The positions published during a seeding superstep.
+	 */
+	private static class PublishedRound {
+
+		private final long superstep;
+		private final Int2ObjectOpenHashMap<PositionBuffer> buffers = new Int2ObjectOpenHashMap<PositionBuffer>();
+		private final LongOpenHashSet vertices = new LongOpenHashSet();
+		private final IntOpenHashSet partitions = new IntOpenHashSet();
+
+		private PublishedRound(long superstep){
+			this.superstep = superstep;
+		}
+	}
+
+	/**
+	 * A primitive buffer of vertex positions.
+	 */
+	public static class PositionBuffer {
+
+		protected LongArrayList ids = new LongArrayList();
+		protected IntArrayList partitions = new IntArrayList();
+		protected IntArrayList components = new IntArrayList();
+		protected FloatArrayList xs = new FloatArrayList();
+		protected FloatArrayList ys = new FloatArrayList();
+		protected IntArrayList weights = new IntArrayList();
+
+		public void add(long id, int partition, int component, float x, float y, int weight){
+			ids.add(id);
+			partitions.add(partition);
+			components.add(component);
+			xs.add(x);
+			ys.add(y);
+			weights.add(weight);
+		}
+
+		public int size(){
+			return ids.size();
+		}
+
+		public void clear(){
+			ids.clear();
+			partitions.clear();
+			components.clear();
+			xs.clear();
+			ys.clear();
+			weights.clear();
+		}
+	}
+
+	/**
+	 * The quadtree of a single component, stored in primitive arrays. Each node keeps its lower left corner, its side, its centre of
+	 * mass, the number of vertices and their total weight; leaves keep the range of their vertices in the reordered position arrays, while inner
+	 * nodes keep the offset of their four children in the children table.
+	 */
+	protected static class ComponentTree {
+
+		private long[] ids;
+		private float[] xs;
+		private float[] ys;
+		private int[] weights;
+
+		private FloatArrayList originX = new FloatArrayList();
+		private FloatArrayList originY = new FloatArrayList();
+		private FloatArrayList side = new FloatArrayList();
+		private FloatArrayList massX = new FloatArrayList();
+		private FloatArrayList massY = new FloatArrayList();
+		private IntArrayList count = new IntArrayList();
+		private IntArrayList weightSum = new IntArrayList();
+		private IntArrayList start = new IntArrayList();
+		private IntArrayList children = new IntArrayList();
+		private IntArrayList childrenTable = new IntArrayList();
+
+		protected ComponentTree(PositionBuffer buffer){
+			int n = buffer.size();
+			ids = buffer.ids.toLongArray();
+			xs = buffer.xs.toFloatArray();
+			ys = buffer.ys.toFloatArray();
+			weights = buffer.weights.toIntArray();
+			if(n == 0)
+				return;
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+			for(int i=0; i<n; i++){
+				minX = Math.min(minX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxX = Math.max(maxX, xs[i]);
+				maxY = Math.max(maxY, ys[i]);
+			}
+			build(0, n, minX, minY, Math.max(maxX - minX, maxY - minY), 0);
+		}
+
+		/**
+		 * Recursively builds the node covering the vertices in [from, to), whose bounding square has the given lower left corner and side.
+		 *
+		 * @return The index of the created node.
+		 */
+		private int build(int from, int to, float originX, float originY, float cellSide, int depth){
+			int node = count.size();
+			float mX = 0, mY = 0;
+			int wSum = 0;
+			for(int i=from; i<to; i++){
+				mX += xs[i]*weights[i];
+				mY += ys[i]*weights[i];
+				wSum += weights[i];
+			}
+			this.originX.add(originX);
+			this.originY.add(originY);
+			side.add(cellSide);
+			massX.add(mX/wSum);
+			massY.add(mY/wSum);
+			count.add(to - from);
+			weightSum.add(wSum);
+			start.add(from);
+			children.add(-1);
+			if(to - from <= leafCapacity || depth >= maxDepth)
+				return node;
+
+			float half = cellSide/2;
+			float midX = originX + half;
+			float midY = originY + half;
+			//PARTITION THE RANGE INTO THE FOUR QUADRANTS: SOUTH/NORTH FIRST, THEN WEST/EAST.
+			int splitY = partition(from, to, midY, false);
+			int splitSW = partition(from, splitY, midX, true);
+			int splitNW = partition(splitY, to, midX, true);
+
+			int[] bounds = new int[]{from, splitSW, splitY, splitNW, to};
+			int[] built = new int[4];
+			for(int q=0; q<4; q++)
+				built[q] = build(bounds[q], bounds[q+1], (q % 2 == 0 ? originX : midX), (q < 2 ? originY : midY), half, depth + 1);
+			children.set(node, childrenTable.size());
+			for(int q=0; q<4; q++)
+				childrenTable.add(built[q]);
+			return node;
+		}
+
+		/**
+		 * Moves the vertices in [from, to) whose coordinate is lower than the pivot at the beginning of the range.
+		 *
+		 * @return The index of the first vertex whose coordinate is not lower than the pivot.
+		 */
+		private int partition(int from, int to, float pivot, boolean onX){
+			int i = from;
+			for(int j=from; j<to; j++){
+				if((onX ? xs[j] : ys[j]) < pivot){
+					swap(i, j);
+					i++;
+				}
+			}
+			return i;
+		}
+
+		/**
+		 * Returns true if the given point lies in the square of the given node, borders included.
+		 */
+		private boolean contains(int node, float x, float y){
+			float oX = originX.getFloat(node);
+			float oY = originY.getFloat(node);
+			float cellSide = side.getFloat(node);
+			return x >= oX && x <= oX + cellSide && y >= oY && y <= oY + cellSide;
+		}
+
+		private void swap(int i, int j){
+			long tId = ids[i]; ids[i] = ids[j]; ids[j] = tId;
+			float tX = xs[i]; xs[i] = xs[j]; xs[j] = tX;
+			float tY = ys[i]; ys[i] = ys[j]; ys[j] = tY;
+			int tW = weights[i]; weights[i] = weights[j]; weights[j] = tW;
+		}
+
+		protected void accumulateRepulsiveForce(long id, float x, float y, int weight, Force force, float theta,
+				IntArrayList stack, float[] temp, float[] accumulator){
+			if(count.isEmpty())
+				return;
+			stack.clear();
+			stack.add(0);
+			while(!stack.isEmpty()){
+				int node = stack.removeInt(stack.size() - 1);
+				int nodeCount = count.getInt(node);
+				if(nodeCount == 0)
+					continue;
+				float deltaX = massX.getFloat(node) - x;
+				float deltaY = massY.getFloat(node) - y;
+				float squareDistance = deltaX*deltaX + deltaY*deltaY;
+				int table = children.getInt(node);
+				boolean isLeaf = table == -1;
+				//A CELL CONTAINING THE QUERY POINT IS ALWAYS OPENED, SO THAT THE VERTEX NEVER REPELS ITS OWN MASS.
+				if(!isLeaf && !contains(node, x, y) && side.getFloat(node)*side.getFloat(node) < theta*theta*squareDistance){
+					//FAR ENOUGH: THE WHOLE CELL IS APPROXIMATED BY ITS CENTRE OF MASS.
+					int averageWeight = Math.max(1, Math.round(weightSum.getInt(node)/(float)nodeCount));
+					accumulateScaled(deltaX, deltaY, squareDistance, weight, averageWeight, nodeCount, force, temp, accumulator);
+				}else if(isLeaf){
+					int from = start.getInt(node);
+					for(int i=from; i<from + nodeCount; i++){
+						if(ids[i] == id)
+							continue;
+						float dX = xs[i] - x;
+						float dY = ys[i] - y;
+						accumulateScaled(dX, dY, dX*dX + dY*dY, weight, weights[i], 1, force, temp, accumulator);
+					}
+				}else{
+					for(int q=0; q<4; q++)
+						stack.add(childrenTable.getInt(table + q));
+				}
+			}
+		}
+	}
+
+}
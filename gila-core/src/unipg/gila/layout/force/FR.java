@@ -45,26 +45,25 @@ public class FR extends Force {
 	}
 
 	/* (non-Javadoc)
-	 * @see unipg.dafne.layout.force.Force#computeAttractiveForce(float[], float)
+	 * @see unipg.gila.layout.force.Force#accumulateAttractiveForce(float, float, float, float, float, int, int, float[])
 	 */
 	@Override
-	public float[] computeAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg) {
-		return new float[]{
-				deltaX*distance/desiredDistance,
-				deltaY*distance/desiredDistance};
+	public void accumulateAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg, float[] accumulator) {
+		accumulator[0] += deltaX*distance/desiredDistance;
+		accumulator[1] += deltaY*distance/desiredDistance;
 		//		return squareDistance/k;
 	}
 
 	/* (non-Javadoc)
-	 * @see unipg.dafne.layout.force.Force#computeRepulsiveForce(float[], float)
+	 * @see unipg.gila.layout.force.Force#accumulateRepulsiveForce(float, float, float, float, int, int, float[])
 	 */
 	@Override
-	public float[] computeRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg) {
+	public void accumulateRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg, float[] accumulator) {
 //		float degCorrection = v2Deg/(float)v1Deg;
 		float degCorrection = 1.0f;
-		return new float[]{
-				degCorrection*(deltaX/Toolbox.floatFuzzyMath(squareDistance)),
-				degCorrection*(deltaY/Toolbox.floatFuzzyMath(squareDistance))};
+		float fuzzySquareDistance = Toolbox.floatFuzzyMath(squareDistance);
+		accumulator[0] += degCorrection*(deltaX/fuzzySquareDistance);
+		accumulator[1] += degCorrection*(deltaY/fuzzySquareDistance);
 //		return 1/distance;
 	}
 }
@@ -34,9 +34,38 @@ public abstract class Force {
 	 */
 	public abstract void generateForce(String args[]);
 	
+	/**
+	 * This method computes the attractive force exerted by v2 on v1 and adds its X and Y components to the given accumulator.
+	 * No objects are created, so it can be safely called once per message by the Propagator class.
+	 * 
+	 * @param deltaX The vertices distance on the X axis.
+	 * @param deltaY The vertices distance on the Y axis.
+	 * @param distance The distance module.
+	 * @param squareDistance The distance square module.
+	 * @param desiredDistance the desired edge length
+	 * @param v1Deg The degree of the first vertex.
+	 * @param v2Deg The degree of the second vertex.
+	 * @param accumulator A caller-owned array of size 2 to which the force components are added.
+	 */
+	public abstract void accumulateAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg, float[] accumulator);
+
+	/**
+	 * This method computes the repulsive force exerted by v2 on v1 and adds its X and Y components to the given accumulator.
+	 * No objects are created, so it can be safely called once per message by the Propagator class.
+	 * 
+	 * @param deltaX The vertices distance on the X axis.
+	 * @param deltaY The vertices distance on the Y axis.
+	 * @param distance The distance module.
+	 * @param squareDistance The distance square module.
+	 * @param v1Deg The degree of the first vertex.
+	 * @param v2Deg The degree of the second vertex.
+	 * @param accumulator A caller-owned array of size 2 to which the force components are added.
+	 */
+	public abstract void accumulateRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg, float[] accumulator);
+
 	/**
 	 * This method computes the attractive force module between two vertices. It will be split into its X and Y components into
-	 * the Propagator class.
+	 * the Propagator class. It allocates a new array at each call; use {@link #accumulateAttractiveForce} in hot loops.
 	 * 
 	 * @param deltaX The vertices distance on the X axis.
 	 * @param deltaY The vertices distance on the Y axis.
@@ -46,22 +75,29 @@ public abstract class Force {
 	 * @param v2Deg The degree of the second vertex.
 	 * @return The attractive force module exerted by v2 on v1.
 	 */
-	public abstract float[] computeAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg);
+	public float[] computeAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg){
+		float[] result = new float[]{0.0f, 0.0f};
+		accumulateAttractiveForce(deltaX, deltaY, distance, squareDistance, desiredDistance, v1Deg, v2Deg, result);
+		return result;
+	}
 
 	/**
 	 * 
 	 * This method computes the repulsive force module between two vertices. It will be split into its X and Y components into
-	 * the Propagator class.
+	 * the Propagator class. It allocates a new array at each call; use {@link #accumulateRepulsiveForce} in hot loops.
 	 * 
 	 * @param deltaX The vertices distance on the X axis.
 	 * @param deltaY The vertices distance on the Y axis.
 	 * @param distance The distance module.
 	 * @param squareDistance The distance square module.
-	 * @param desiredDistance the desired edge length
 	 * @param v1Deg The degree of the first vertex.
 	 * @param v2Deg The degree of the second vertex.
 	 * @return The repulsive force module exerted by v2 on v1.
 	 */
-	public abstract float[] computeRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg);
+	public float[] computeRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg){
+		float[] result = new float[]{0.0f, 0.0f};
+		accumulateRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg, result);
+		return result;
+	}
 
 }
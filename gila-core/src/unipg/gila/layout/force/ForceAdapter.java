@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ *
+ */
+package unipg.gila.layout.force;
+
+/**
+ * This abstract class adapts force models written against the array-returning API to the accumulator-style one used
+ * by the Propagator class. Subclasses only implement computeAttractiveForce and computeRepulsiveForce; the returned
+ * arrays are added to the accumulator.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public abstract class ForceAdapter extends Force {
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.force.Force#computeAttractiveForce(float, float, float, float, float, int, int)
+	 */
+	@Override
+	public abstract float[] computeAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg);
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.force.Force#computeRepulsiveForce(float, float, float, float, int, int)
+	 */
+	@Override
+	public abstract float[] computeRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg);
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.force.Force#accumulateAttractiveForce(float, float, float, float, float, int, int, float[])
+	 */
+	@Override
+	public void accumulateAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg, float[] accumulator) {
+		float[] tempForce = computeAttractiveForce(deltaX, deltaY, distance, squareDistance, desiredDistance, v1Deg, v2Deg);
+		accumulator[0] += tempForce[0];
+		accumulator[1] += tempForce[1];
+	}
+
+	/* (non-Javadoc)
+	 * @see unipg.gila.layout.force.Force#accumulateRepulsiveForce(float, float, float, float, int, int, float[])
+	 */
+	@Override
+	public void accumulateRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg, float[] accumulator) {
+		float[] tempForce = computeRepulsiveForce(deltaX, deltaY, distance, squareDistance, v1Deg, v2Deg);
+		accumulator[0] += tempForce[0];
+		accumulator[1] += tempForce[1];
+	}
+
+}
@@ -45,19 +45,21 @@ public class LinLog extends Force {
 	}
 
 	/* (non-Javadoc)
-	 * @see unipg.dafne.layout.force.Force#computeAttractiveForce(float[], float)
+	 * @see unipg.gila.layout.force.Force#accumulateAttractiveForce(float, float, float, float, float, int, int, float[])
 	 */
 	@Override
-	public float[] computeAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg) {
-		return new float[]{attractiveForcesConstant*(deltaX/distance), attractiveForcesConstant*(deltaY/distance)};
+	public void accumulateAttractiveForce(float deltaX, float deltaY, float distance, float squareDistance, float desiredDistance, int v1Deg, int v2Deg, float[] accumulator) {
+		accumulator[0] += attractiveForcesConstant*(deltaX/distance);
+		accumulator[1] += attractiveForcesConstant*(deltaY/distance);
 	}
 
 	/* (non-Javadoc)
-	 * @see unipg.dafne.layout.force.Force#computeRepulsiveForce(float[], float)
+	 * @see unipg.gila.layout.force.Force#accumulateRepulsiveForce(float, float, float, float, int, int, float[])
 	 */
 	@Override
-	public float[] computeRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg) {
+	public void accumulateRepulsiveForce(float deltaX, float deltaY, float distance, float squareDistance, int v1Deg, int v2Deg, float[] accumulator) {
 		float degProduct = v1Deg*v2Deg;
-		return new float[]{degProduct*(deltaX/squareDistance),degProduct*(deltaY/squareDistance)};	
+		accumulator[0] += degProduct*(deltaX/squareDistance);
+		accumulator[1] += degProduct*(deltaY/squareDistance);
 	}
 }
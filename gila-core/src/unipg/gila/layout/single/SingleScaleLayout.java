@@ -39,6 +39,7 @@ import unipg.gila.layout.LayoutRoutine.DrawingBoundariesExplorer;
 import unipg.gila.layout.LayoutRoutine.DrawingBoundariesExplorerWithComponentsNo;
 import unipg.gila.layout.LayoutRoutine.DrawingScaler;
 import unipg.gila.layout.LayoutRoutine.LayoutCCs;
+import unipg.gila.layout.PivotMDSRoutine.PivotMDSComputation;
 
 public class SingleScaleLayout {
 
@@ -113,6 +114,23 @@ public class SingleScaleLayout {
 		}
 	}
 	
+	/**
+	 * The propagator which also seeds the vertices in the supersteps flagged by the master, used when "layout.fused" is set.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class SingleFusedPropagator extends SinglePropagator{
+
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.AbstractPropagator#createFusedSeeder()
+		 */
+		@Override
+		protected AbstractSeeder<CoordinateWritable, IntWritable> createFusedSeeder() {
+			return new SingleSeeder();
+		}
+	}
+	
 	/**
 	 * @author Alessio Arleo
 	 *
@@ -238,5 +256,14 @@ public class SingleScaleLayout {
 		}
 	}
 
-	
+	/**
+	 * The pivot-MDS initial placement, with unit length edges.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class SinglePivotMDS extends PivotMDSComputation<CoordinateWritable, IntWritable> {
+		
+	}
+
 }
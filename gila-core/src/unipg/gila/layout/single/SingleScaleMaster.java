@@ -25,6 +25,7 @@ import org.apache.hadoop.io.IntWritable;
 
 import unipg.gila.layout.GraphReintegrationRoutine;
 import unipg.gila.layout.LayoutRoutine;
+import unipg.gila.layout.PivotMDSRoutine;
 import unipg.gila.utils.Toolbox;
 
 /**
@@ -35,9 +36,11 @@ public class SingleScaleMaster extends DefaultMasterCompute{
 	
 	LayoutRoutine layoutRoutine;
 	GraphReintegrationRoutine reintegrationRoutine;
+	PivotMDSRoutine pivotMDSRoutine;
 	float k;
 	
 	boolean layoutCompleted;
+	boolean seeding;
 	
 	/* (non-Javadoc)
 	 * @see org.apache.giraph.master.DefaultMasterCompute#initialize()
@@ -49,10 +52,15 @@ public class SingleScaleMaster extends DefaultMasterCompute{
 		layoutRoutine.initialize(this, SingleScaleLayout.SingleSeeder.class, SingleScaleLayout.SinglePropagator.class,
 								SingleScaleLayout.SingleDrawingExplorer.class, SingleScaleLayout.SingleDrawingExplorerWithComponentsNo.class, 
 								SingleScaleLayout.SingleDrawingScaler.class, SingleScaleLayout.SingleLayoutCCs.class);
+		layoutRoutine.setFusedPropagator(SingleScaleLayout.SingleFusedPropagator.class);
 		
 		reintegrationRoutine = new GraphReintegrationRoutine();
 		reintegrationRoutine.initialize(this);
 		
+		pivotMDSRoutine = new PivotMDSRoutine();
+		pivotMDSRoutine.initialize(this, SingleScaleLayout.SinglePivotMDS.class);
+		seeding = getConf().getBoolean(PivotMDSRoutine.pivotMDSString, false);
+		
 	
 		float nl = getConf().getFloat(LayoutRoutine.node_length , LayoutRoutine.defaultNodeValue);
 		float nw = getConf().getFloat(LayoutRoutine.node_width , LayoutRoutine.defaultNodeValue);
@@ -70,6 +78,12 @@ public class SingleScaleMaster extends DefaultMasterCompute{
 	 */
 	@Override
 	public void compute() {
+		if(seeding){
+			if(!pivotMDSRoutine.compute())
+				return;
+			seeding = false;
+			layoutRoutine.setInformedPlacement(getConf().getFloat(PivotMDSRoutine.tempFactorBoostString, PivotMDSRoutine.tempFactorBoostDefault));
+		}
 		if(!layoutCompleted){
 			if(layoutRoutine.compute(getTotalNumVertices(), k))
 				layoutCompleted = true;
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.partitioning;
+
+/**
+ * This class maps the plane onto the cells of a Hilbert curve of a given order, i.e. a 2^order x 2^order grid visited so that
+ * consecutive cells are adjacent; cutting the curve into intervals yields compact regions, which is what the Hilbert initialization
+ * of Spinner relies on.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class HilbertCurve {
+
+	/**
+	 * The highest order whose number of cells fits in an int.
+	 */
+	public static final int MAX_ORDER = 15;
+
+	private HilbertCurve(){
+	}
+
+	/**
+	 * Returns the number of cells of a curve of the given order.
+	 * 
+	 * @throws IllegalArgumentException If the order is not in [0, MAX_ORDER].
+	 */
+	public static int cells(int order){
+		if(order < 0 || order > MAX_ORDER)
+			throw new IllegalArgumentException("Hilbert curve order " + order + " not in [0, " + MAX_ORDER + "]");
+		return 1 << (2*order);
+	}
+
+	/**
+	 * Returns true if the given bounding box {minX, minY, maxX, maxY} is finite and has a positive extent along at least one axis,
+	 * i.e. if the curve can spread the vertices over more than one cell.
+	 */
+	public static boolean spans(float[] bounds){
+		for(float b : bounds)
+			if(Float.isNaN(b) || Float.isInfinite(b))
+				return false;
+		return bounds[2] > bounds[0] || bounds[3] > bounds[1];
+	}
+
+	/**
+	 * Returns the position along the curve of the given grid cell.
+	 * 
+	 * @param order The order of the curve.
+	 * @param x The column of the cell, in [0, 2^order).
+	 * @param y The row of the cell, in [0, 2^order).
+	 */
+	public static long index(int order, int x, int y){
+		int n = 1 << order;
+		long d = 0;
+		for(int s = n >> 1; s > 0; s >>= 1){
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if(ry == 0){
+				if(rx == 1){
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Returns the position along the curve of the cell containing the given coordinates.
+	 * 
+	 * @param order The order of the curve.
+	 * @param coords The coordinates.
+	 * @param bounds The bounding box of the drawing {minX, minY, maxX, maxY}.
+	 */
+	public static long index(int order, float[] coords, float[] bounds){
+		int n = 1 << order;
+		return index(order, gridCoordinate(coords[0], bounds[0], bounds[2], n), gridCoordinate(coords[1], bounds[1], bounds[3], n));
+	}
+
+	private static int gridCoordinate(float value, float min, float max, int n){
+		if(!(max > min))
+			return 0;
+		int cell = (int) ((value - min) / (max - min) * n);
+		return Math.max(0, Math.min(n - 1, cell));
+	}
+
+	/**
+	 * Returns the interval of the curve the given position belongs to.
+	 * 
+	 * @param cuts The sorted first positions of the intervals after the first one.
+	 * @param index The position along the curve.
+	 */
+	public static int interval(long[] cuts, long index){
+		int low = 0;
+		int high = cuts.length;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(cuts[middle] <= index)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Cuts the curve into the given number of intervals of similar weight.
+	 * 
+	 * @param weights The weight of each cell, in curve order.
+	 * @param intervals The number of intervals.
+	 * @return The first position of each interval after the first one.
+	 */
+	public static long[] cuts(long[] weights, int intervals){
+		long total = 0;
+		for(long w : weights)
+			total += w;
+		long[] cuts = new long[Math.max(0, intervals - 1)];
+		int next = 1;
+		double prefix = 0;
+		for(int c = 0; c < weights.length && next < intervals; c++){
+			while(next < intervals && prefix * intervals >= (double) next * total){
+				cuts[next - 1] = c;
+				next++;
+			}
+			prefix += weights[c];
+		}
+		for(; next < intervals; next++)
+			cuts[next - 1] = weights.length;
+		return cuts;
+	}
+
+}
@@ -16,13 +16,16 @@
 package unipg.gila.partitioning;
 
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import unipg.gila.aggregators.LongArraySumAggregator;
+import unipg.gila.aggregators.LongWritableSetAggregator;
 import unipg.gila.common.datastructures.EdgeValue;
+import unipg.gila.common.datastructures.LongWritableArray;
+import unipg.gila.common.datastructures.LongWritableSet;
 import unipg.gila.common.datastructures.PartitioningVertexValue;
 import unipg.gila.common.datastructures.messagetypes.DegMessage;
 import unipg.gila.common.datastructures.messagetypes.PartitionMessage;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -30,16 +33,21 @@ import java.util.Random;
 
 import org.apache.giraph.aggregators.BooleanAndAggregator;
 import org.apache.giraph.aggregators.DoubleSumAggregator;
+import org.apache.giraph.aggregators.FloatMaxAggregator;
+import org.apache.giraph.aggregators.FloatMinAggregator;
 import org.apache.giraph.aggregators.LongSumAggregator;
 import org.apache.giraph.edge.Edge;
 import org.apache.giraph.edge.EdgeFactory;
 import org.apache.giraph.graph.AbstractComputation;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.master.DefaultMasterCompute;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
 
 import com.google.common.collect.Lists;
 
@@ -96,6 +104,27 @@ import com.google.common.collect.Lists;
  * Each vertex stores the position of its neighbors in the edge values, to avoid
  * re-communicating labels at each iteration also for non-migrating vertices.
  * 
+ * The load of a vertex is set with "spinner.loadModel": its number of edges
+ * (edges, the default), its squared degree (squared_degree) or a proxy of its
+ * two-hop flooding cost (two_hop); partitions are then balanced by expected
+ * layout work rather than by raw edges. The two_hop load is not the size of
+ * the two-hop neighbourhood: it is the sum of the degrees announced to the
+ * vertex by its in-neighbours before the edges are made symmetric (shared
+ * neighbours are counted once per path, and on directed input the edges added
+ * by the symmetrization are missed), floored at the vertex degree.
+ * 
+ * When "spinner.hilbert" is set and input coordinates are meaningful (e.g. a
+ * previous layout, with "partitioning.input.doRandomizeCoordinates" false),
+ * the random initialization is replaced by a geometric one: the vertices are
+ * sorted along a Hilbert curve of order "spinner.hilbert.order" over their
+ * bounding box, and the curve is cut into intervals of similar load, one per
+ * partition. Neighbouring vertices in the plane, which exchange most of the
+ * layout messages, thus share a partition. The assignment is then refined by
+ * "spinner.hilbert.refinements" label propagation rounds (none by default).
+ * The order must be in [1, 15]. Vertices without coordinates are assigned a
+ * random partition; if no vertex has coordinates, or they all lie on the same
+ * point, the random initialization is used instead.
+ * 
  * Due to the random access to edges, this class performs much better when using
  * OpenHashMapEdges class provided with this code.
  * 
@@ -108,11 +137,19 @@ import com.google.common.collect.Lists;
  * 
  */
 public class Spinner {
-	private static final String AGGREGATOR_LOAD_PREFIX = "AGG_LOAD_";
-	private static final String AGGREGATOR_DEMAND_PREFIX = "AGG_DEMAND_";
+	private static final String AGGREGATOR_LOADS = "AGG_LOADS";
+	private static final String AGGREGATOR_DEMANDS = "AGG_DEMANDS";
 	private static final String AGGREGATOR_STATE = "AGG_STATE";
 	private static final String AGGREGATOR_MIGRATIONS = "AGG_MIGRATIONS";
 	private static final String AGGREGATOR_LOCALS = "AGG_LOCALS";
+	private static final String AGGREGATOR_COMPONENT_ROOTS = "AGG_COMPONENT_ROOTS";
+	private static final String AGGREGATOR_MIN_X = "AGG_HILBERT_MIN_X";
+	private static final String AGGREGATOR_MIN_Y = "AGG_HILBERT_MIN_Y";
+	private static final String AGGREGATOR_MAX_X = "AGG_HILBERT_MAX_X";
+	private static final String AGGREGATOR_MAX_Y = "AGG_HILBERT_MAX_Y";
+	private static final String AGGREGATOR_HILBERT_CELLS = "AGG_HILBERT_CELLS";
+	private static final String HILBERT_CUTS_BROADCAST = "BRD_HILBERT_CUTS";
+	private static final String COMPONENT_IDS_BROADCAST = "BRD_COMPONENT_IDS";
 	private static final String NUM_PARTITIONS = "spinner.numberOfPartitions";
 	private static final int DEFAULT_NUM_PARTITIONS = 32;
 	private static final String ADDITIONAL_CAPACITY = "spinner.additionalCapacity";
@@ -129,6 +166,13 @@ public class Spinner {
 	private static final short DEFAULT_REPARTITION = 0;
 	private static final String WINDOW_SIZE = "spinner.windowSize";
 	private static final int DEFAULT_WINDOW_SIZE = 5;
+	private static final String LOAD_MODEL = "spinner.loadModel";
+	private static final String DEFAULT_LOAD_MODEL = "edges";
+	private static final String HILBERT = "spinner.hilbert";
+	private static final String HILBERT_ORDER = "spinner.hilbert.order";
+	private static final int DEFAULT_HILBERT_ORDER = 7;
+	private static final String HILBERT_REFINEMENTS = "spinner.hilbert.refinements";
+	private static final int DEFAULT_HILBERT_REFINEMENTS = 0;
 
 	private static final String COUNTER_GROUP = "Partitioning Counters";
 	private static final String MIGRATIONS_COUNTER = "Migrations";
@@ -146,25 +190,107 @@ public class Spinner {
 	
 	public static final String pruneOneDegreesString = "partitioning.pruneOneDegrees";
 	public static final String findComponentsString = "partitioning.computeComponents";
+	public static final String renumberComponentsString = "partitioning.components.renumber";
+
+	/**
+	 * The cost of a vertex balanced across the partitions.
+	 */
+	public static enum LoadModel {
+		EDGES, SQUARED_DEGREE, TWO_HOP;
+
+		public static LoadModel fromConf(Configuration conf) {
+			return valueOf(conf.get(LOAD_MODEL, DEFAULT_LOAD_MODEL).toUpperCase());
+		}
+
+		/**
+		 * Returns the load of the given vertex.
+		 */
+		public long load(Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex) {
+			long edges = vertex.getNumEdges();
+			switch (this) {
+			case SQUARED_DEGREE:
+				return edges * edges;
+			case TWO_HOP:
+				//FLOOD COST PROXY, SEE ConverterUpdateEdges
+				return Math.max(edges, vertex.getValue().getTwoHopSize());
+			default:
+				return edges;
+			}
+		}
+	}
+
+	/**
+	 * Returns the total load, i.e. the sum of the partition loads.
+	 */
+	private static long totalLoad(long[] loads) {
+		long total = 0;
+		for (long load : loads) {
+			total += load;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns a copy of the given aggregated array, zero-padded to the given length.
+	 */
+	private static long[] aggregatedArray(Writable aggregated, int length) {
+		return Arrays.copyOf(((LongWritableArray) aggregated).get(), length);
+	}
+
+	/**
+	 * Returns the given value rounded up to the third decimal digit, as
+	 * new BigDecimal(value).setScale(3, BigDecimal.ROUND_CEILING) would, in
+	 * fixed point and without allocations. The product by 1000 is computed as
+	 * a rounded part plus its exact error (Dekker's product), and the ceiling
+	 * of the rounded part is corrected by the sign of the error.
+	 * 
+	 * @return The value in thousandths.
+	 */
+	static long thousandthsCeiling(double value) {
+		double product = value * 1000;
+		double split = value * 134217729.0;
+		double high = split - (split - value);
+		double low = value - high;
+		double error = (high * 1000 - product) + low * 1000;
+		long thousandths = (long) Math.ceil(product);
+		if ((product - thousandths) + error > 0) {
+			thousandths++;
+		} else if ((product - (thousandths - 1)) + error <= 0) {
+			thousandths--;
+		}
+		return thousandths;
+	}
 
 	public static class ComputeNewPartition
 	extends
 	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, PartitionMessage, NullWritable> {
 		private ShortArrayList maxIndices = new ShortArrayList();
 		private Random rnd = new Random();
-		private String[] demandAggregatorNames;
 		private int[] partitionFrequency;
 		private long[] loads;
+		private double[] penalties;
+		private long[] demands;
+		private long localEdges;
+		private double state;
 		private long totalCapacity;
 		private short numberOfPartitions;
 		private short repartition;
 		private double additionalCapacity;
 		private double lambda;
+		private LoadModel loadModel;
+
+		private final LongWritable otherId = new LongWritable();
 
 		private double computeW(int newPartition) {
-			return new BigDecimal(((double) loads[newPartition])
-					/ totalCapacity).setScale(3, BigDecimal.ROUND_CEILING)
-					.doubleValue();
+			return ((double) thousandthsCeiling(((double) loads[newPartition])
+					/ totalCapacity)) / 1000;
+		}
+
+		/*
+		 * Cache the penalty of a partition, to be called when its load changes
+		 */
+		private void updatePenalty(int partition) {
+			penalties[partition] = lambda * computeW(partition);
 		}
 
 		/*
@@ -172,12 +298,13 @@ public class Spinner {
 		 */
 		private void requestMigration(
 				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
-				int numberOfEdges, short currentPartition, short newPartition) {
+				long load, short currentPartition, short newPartition) {
 			vertex.getValue().setNewPartition(newPartition);
-			aggregate(demandAggregatorNames[newPartition], new LongWritable(
-					numberOfEdges));
-			loads[newPartition] += numberOfEdges;
-			loads[currentPartition] -= numberOfEdges;
+			demands[newPartition] += load;
+			loads[newPartition] += load;
+			loads[currentPartition] -= load;
+			updatePenalty(newPartition);
+			updatePenalty(currentPartition);
 		}
 
 		/*
@@ -187,12 +314,11 @@ public class Spinner {
 				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
 				Iterable<PartitionMessage> messages) {
 			for (PartitionMessage message : messages) {
-				LongWritable otherId = new LongWritable(message.getPayloadVertex());
-				EdgeValue oldValue = vertex.getEdgeValue(otherId);
-				vertex.setEdgeValue(
-						otherId,
-						new EdgeValue(message.getValue(), oldValue
-								.getWeight()));
+				otherId.set(message.getPayloadVertex());
+				// the value keeps its weight and is written back in place
+				EdgeValue value = vertex.getEdgeValue(otherId);
+				value.setPartition(message.getValue());
+				vertex.setEdgeValue(otherId, value);
 			}
 		}
 
@@ -214,7 +340,7 @@ public class Spinner {
 				}
 			}
 			// update cut edges stats
-			aggregate(AGGREGATOR_LOCALS, new LongWritable(localEdges));
+			this.localEdges += localEdges;
 
 			return totalLabels;
 		}
@@ -257,7 +383,7 @@ public class Spinner {
 				// original LPA
 				double LPA = ((double) partitionFrequency[i]) / totalLabels;
 				// penalty function
-				double PF = lambda * computeW(i);
+				double PF = penalties[i];
 				// compute the rank and make sure the result is > 0
 				double H = lambda + LPA - PF;
 				if (i == currentPartition) {
@@ -273,7 +399,7 @@ public class Spinner {
 			}
 			newPartition = chooseRandomPartitionOrCurrent(currentPartition);
 			// update state stats
-			aggregate(AGGREGATOR_STATE, new DoubleWritable(currentState));
+			state += currentState;
 
 			return newPartition;
 		}
@@ -284,7 +410,6 @@ public class Spinner {
 				Iterable<PartitionMessage> messages) throws IOException {
 			boolean isActive = messages.iterator().hasNext();
 			short currentPartition = vertex.getValue().getCurrentPartition();
-			int numberOfEdges = vertex.getNumEdges();
 
 			// update neighbors partitions
 			updateNeighborsPartitions(vertex, messages);
@@ -297,7 +422,7 @@ public class Spinner {
 
 			// request migration to the new destination
 			if (newPartition != currentPartition && isActive) {
-				requestMigration(vertex, numberOfEdges, currentPartition,
+				requestMigration(vertex, loadModel.load(vertex), currentPartition,
 						newPartition);
 			}
 		}
@@ -312,26 +437,37 @@ public class Spinner {
 					REPARTITION, DEFAULT_REPARTITION);
 			lambda = getContext().getConfiguration().getFloat(LAMBDA,
 					DEFAULT_LAMBDA);
+			loadModel = LoadModel.fromConf(getConf());
 			partitionFrequency = new int[numberOfPartitions + repartition];
-			loads = new long[numberOfPartitions + repartition];
-			demandAggregatorNames = new String[numberOfPartitions + repartition];
+			demands = new long[numberOfPartitions + repartition];
+			localEdges = 0;
+			state = 0;
+			// cache loads for the penalty function
+			loads = aggregatedArray(getAggregatedValue(AGGREGATOR_LOADS), numberOfPartitions + repartition);
 			totalCapacity = (long) Math
-					.round(((double) getTotalNumEdges()
+					.round(((double) totalLoad(loads)
 							* (1 + additionalCapacity) / (numberOfPartitions + repartition)));
-			// cache loads for the penalty function
+			penalties = new double[numberOfPartitions + repartition];
 			for (int i = 0; i < numberOfPartitions + repartition; i++) {
-				demandAggregatorNames[i] = AGGREGATOR_DEMAND_PREFIX + i;
-				loads[i] = ((LongWritable) getAggregatedValue(AGGREGATOR_LOAD_PREFIX
-						+ i)).get();
+				updatePenalty(i);
 			}
 		}
+
+		@Override
+		public void postSuperstep() {
+			aggregate(AGGREGATOR_DEMANDS, new LongWritableArray(demands));
+			aggregate(AGGREGATOR_LOCALS, new LongWritable(localEdges));
+			aggregate(AGGREGATOR_STATE, new DoubleWritable(state));
+		}
 	}
 
 	public static class ComputeMigration
 	extends
 	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, NullWritable, PartitionMessage> {
 		private Random rnd = new Random();
-		private String[] loadAggregatorNames;
+		private long[] loadDeltas;
+		private long migrations;
+		private LoadModel loadModel;
 		private double[] migrationProbabilities;
 		private short numberOfPartitions;
 		private short repartition;
@@ -342,12 +478,10 @@ public class Spinner {
 				short currentPartition, short newPartition) {
 			vertex.getValue().setCurrentPartition(newPartition);
 			// update partitions loads
-			int numberOfEdges = vertex.getNumEdges();
-			aggregate(loadAggregatorNames[currentPartition], new LongWritable(
-					-numberOfEdges));
-			aggregate(loadAggregatorNames[newPartition], new LongWritable(
-					numberOfEdges));
-			aggregate(AGGREGATOR_MIGRATIONS, new LongWritable(1));
+			long load = loadModel.load(vertex);
+			loadDeltas[currentPartition] -= load;
+			loadDeltas[newPartition] += load;
+			migrations++;
 			// inform the neighbors
 			PartitionMessage message = new PartitionMessage(vertex.getId()
 					.get(), newPartition);
@@ -382,19 +516,20 @@ public class Spinner {
 					.getInt(NUM_PARTITIONS, DEFAULT_NUM_PARTITIONS);
 			repartition = (short) getContext().getConfiguration().getInt(
 					REPARTITION, DEFAULT_REPARTITION);
-			long totalCapacity = (long) Math
-					.round(((double) getTotalNumEdges()
-							* (1 + additionalCapacity) / (numberOfPartitions + repartition)));
+			loadModel = LoadModel.fromConf(getConf());
 			migrationProbabilities = new double[numberOfPartitions
 			                                    + repartition];
-			loadAggregatorNames = new String[numberOfPartitions + repartition];
+			loadDeltas = new long[numberOfPartitions + repartition];
+			migrations = 0;
+			long[] loads = aggregatedArray(getAggregatedValue(AGGREGATOR_LOADS), numberOfPartitions + repartition);
+			long totalCapacity = (long) Math
+					.round(((double) totalLoad(loads)
+							* (1 + additionalCapacity) / (numberOfPartitions + repartition)));
+			long[] demands = aggregatedArray(getAggregatedValue(AGGREGATOR_DEMANDS), numberOfPartitions + repartition);
 			// cache migration probabilities per destination partition
 			for (int i = 0; i < numberOfPartitions + repartition; i++) {
-				loadAggregatorNames[i] = AGGREGATOR_LOAD_PREFIX + i;
-				long load = ((LongWritable) getAggregatedValue(loadAggregatorNames[i]))
-						.get();
-				long demand = ((LongWritable) getAggregatedValue(AGGREGATOR_DEMAND_PREFIX
-						+ i)).get();
+				long load = loads[i];
+				long demand = demands[i];
 				long remainingCapacity = totalCapacity - load;
 				if (demand == 0 || remainingCapacity <= 0) {
 					migrationProbabilities[i] = 0;
@@ -404,13 +539,20 @@ public class Spinner {
 				}
 			}
 		}
+
+		@Override
+		public void postSuperstep() {
+			aggregate(AGGREGATOR_LOADS, new LongWritableArray(loadDeltas));
+			aggregate(AGGREGATOR_MIGRATIONS, new LongWritable(migrations));
+		}
 	}
 
 	public static class Initializer
 	extends
 	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, PartitionMessage, PartitionMessage> {
 		private Random rnd = new Random();
-		private String[] loadAggregatorNames;
+		private long[] loads;
+		private LoadModel loadModel;
 		private int numberOfPartitions;
 
 		@Override
@@ -421,8 +563,7 @@ public class Spinner {
 			if (partition == -1) {
 				partition = (short) rnd.nextInt(numberOfPartitions);
 			}
-			aggregate(loadAggregatorNames[partition],
-					new LongWritable(vertex.getNumEdges()));
+			loads[partition] += loadModel.load(vertex);
 			vertex.getValue().setCurrentPartition(partition);
 			vertex.getValue().setNewPartition(partition);
 			PartitionMessage message = new PartitionMessage(vertex.getId()
@@ -434,10 +575,71 @@ public class Spinner {
 		public void preSuperstep() {
 			numberOfPartitions = getContext().getConfiguration().getInt(
 					NUM_PARTITIONS, DEFAULT_NUM_PARTITIONS);
-			loadAggregatorNames = new String[numberOfPartitions];
-			for (int i = 0; i < numberOfPartitions; i++) {
-				loadAggregatorNames[i] = AGGREGATOR_LOAD_PREFIX + i;
-			}
+			loads = new long[numberOfPartitions];
+			loadModel = LoadModel.fromConf(getConf());
+		}
+
+		@Override
+		public void postSuperstep() {
+			aggregate(AGGREGATOR_LOADS, new LongWritableArray(loads));
+		}
+	}
+
+	/**
+	 * Once the connected components have been found, each component root (the vertex whose id is the component id) adds its id to
+	 * the set of the compute thread, which is aggregated at the end of the superstep.
+	 */
+	public static class ComponentRootsCollector
+	extends
+	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, LongWritable, LongWritable> {
+
+		private LongWritableSet roots;
+
+		@Override
+		public void preSuperstep() {
+			roots = new LongWritableSet();
+		}
+
+		@Override
+		public void compute(
+				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
+				Iterable<LongWritable> messages) throws IOException {
+			if(vertex.getValue().getComponent() == vertex.getId().get())
+				roots.addElement(new LongWritable(vertex.getId().get()));
+		}
+
+		@Override
+		public void postSuperstep() {
+			if(roots.size() > 0)
+				aggregate(AGGREGATOR_COMPONENT_ROOTS, roots);
+		}
+	}
+
+	/**
+	 * Renumbers the components into the dense 0..C-1 range, replacing each component id with its position among the sorted ids
+	 * broadcast by the master, so that the per-component tables of the layout can be indexed directly.
+	 */
+	public static class ComponentRenumbering
+	extends
+	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, LongWritable, LongWritable> {
+
+		private long[] componentIds;
+
+		@Override
+		public void preSuperstep() {
+			componentIds = ((LongWritableArray)getBroadcast(COMPONENT_IDS_BROADCAST)).get();
+		}
+
+		@Override
+		public void compute(
+				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
+				Iterable<LongWritable> messages) throws IOException {
+			PartitioningVertexValue value = vertex.getValue();
+			int index = Arrays.binarySearch(componentIds, value.getComponent());
+			if(index < 0) //THE COMPONENT HAS NO ROOT, THE CONNECTED COMPONENTS DID NOT CONVERGE
+				throw new IllegalStateException("Vertex " + vertex.getId() + " belongs to component " + value.getComponent()
+						+ ", whose root was not collected; the components cannot be renumbered.");
+			value.setComponent(index);
 		}
 	}
 
@@ -445,11 +647,138 @@ public class Spinner {
 	extends
 	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, LongWritable, DegMessage> {
 
+		// bounding box of the coordinates, for the Hilbert initialization
+		private boolean hilbert;
+		private float[] bounds;
+
 		@Override
 		public void compute(
 				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
 				Iterable<LongWritable> messages) throws IOException {
 			sendMessageToAllEdges(vertex, new DegMessage(vertex.getId().get(), vertex.getNumEdges()));
+			float[] coords = vertex.getValue().getCoords();
+			if (hilbert && coords != null) {
+				bounds[0] = Math.min(bounds[0], coords[0]);
+				bounds[1] = Math.min(bounds[1], coords[1]);
+				bounds[2] = Math.max(bounds[2], coords[0]);
+				bounds[3] = Math.max(bounds[3], coords[1]);
+			}
+		}
+
+		@Override
+		public void preSuperstep() {
+			hilbert = getConf().getBoolean(HILBERT, false);
+			bounds = new float[]{Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+		}
+
+		@Override
+		public void postSuperstep() {
+			if (!hilbert || bounds[0] > bounds[2]) {
+				return;
+			}
+			aggregate(AGGREGATOR_MIN_X, new FloatWritable(bounds[0]));
+			aggregate(AGGREGATOR_MIN_Y, new FloatWritable(bounds[1]));
+			aggregate(AGGREGATOR_MAX_X, new FloatWritable(bounds[2]));
+			aggregate(AGGREGATOR_MAX_Y, new FloatWritable(bounds[3]));
+		}
+	}
+
+	/**
+	 * Returns the bounding box {minX, minY, maxX, maxY} aggregated during the
+	 * first superstep.
+	 */
+	private static float[] hilbertBounds(AbstractComputation<?, ?, ?, ?, ?> computation) {
+		return new float[]{
+				((FloatWritable) computation.getAggregatedValue(AGGREGATOR_MIN_X)).get(),
+				((FloatWritable) computation.getAggregatedValue(AGGREGATOR_MIN_Y)).get(),
+				((FloatWritable) computation.getAggregatedValue(AGGREGATOR_MAX_X)).get(),
+				((FloatWritable) computation.getAggregatedValue(AGGREGATOR_MAX_Y)).get()};
+	}
+
+	/**
+	 * Sums the load of the vertices lying in each cell of the Hilbert curve.
+	 */
+	public static class HilbertHistogram
+	extends
+	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, PartitionMessage, PartitionMessage> {
+		private int order;
+		private float[] bounds;
+		private long[] cellLoads;
+		private LoadModel loadModel;
+
+		@Override
+		public void compute(
+				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
+				Iterable<PartitionMessage> messages) throws IOException {
+			float[] coords = vertex.getValue().getCoords();
+			if (coords == null) {
+				return;
+			}
+			long cell = HilbertCurve.index(order, coords, bounds);
+			cellLoads[(int) cell] += loadModel.load(vertex);
+		}
+
+		@Override
+		public void preSuperstep() {
+			order = getConf().getInt(HILBERT_ORDER, DEFAULT_HILBERT_ORDER);
+			bounds = hilbertBounds(this);
+			cellLoads = new long[HilbertCurve.cells(order)];
+			loadModel = LoadModel.fromConf(getConf());
+		}
+
+		@Override
+		public void postSuperstep() {
+			aggregate(AGGREGATOR_HILBERT_CELLS, new LongWritableArray(cellLoads));
+		}
+	}
+
+	/**
+	 * Assigns each vertex the partition of the interval of the Hilbert curve its
+	 * cell belongs to; the intervals are broadcast by the master. Vertices
+	 * without coordinates get a random partition. Otherwise it behaves as the
+	 * Initializer.
+	 */
+	public static class HilbertInitializer
+	extends
+	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, PartitionMessage, PartitionMessage> {
+		private int order;
+		private float[] bounds;
+		private long[] cuts;
+		private long[] loads;
+		private LoadModel loadModel;
+		private Random rnd = new Random();
+
+		@Override
+		public void compute(
+				Vertex<LongWritable, PartitioningVertexValue, EdgeValue> vertex,
+				Iterable<PartitionMessage> messages) throws IOException {
+			float[] coords = vertex.getValue().getCoords();
+			short partition;
+			if (coords == null) {
+				partition = (short) rnd.nextInt(loads.length);
+			} else {
+				partition = (short) HilbertCurve.interval(cuts, HilbertCurve.index(order, coords, bounds));
+			}
+			loads[partition] += loadModel.load(vertex);
+			vertex.getValue().setCurrentPartition(partition);
+			vertex.getValue().setNewPartition(partition);
+			PartitionMessage message = new PartitionMessage(vertex.getId()
+					.get(), partition);
+			sendMessageToAllEdges(vertex, message);
+		}
+
+		@Override
+		public void preSuperstep() {
+			order = getConf().getInt(HILBERT_ORDER, DEFAULT_HILBERT_ORDER);
+			bounds = hilbertBounds(this);
+			cuts = ((LongWritableArray) getBroadcast(HILBERT_CUTS_BROADCAST)).get();
+			loads = new long[cuts.length + 1];
+			loadModel = LoadModel.fromConf(getConf());
+		}
+
+		@Override
+		public void postSuperstep() {
+			aggregate(AGGREGATOR_LOADS, new LongWritableArray(loads));
 		}
 	}
 
@@ -457,7 +786,8 @@ public class Spinner {
 	extends
 	AbstractComputation<LongWritable, PartitioningVertexValue, EdgeValue, PartitionMessage, PartitionMessage> {
 		private Random rnd = new Random();
-		private String[] loadAggregatorNames;
+		private long[] loads;
+		private LoadModel loadModel;
 		private int numberOfPartitions;
 		private short repartition;
 		private double migrationProbability;
@@ -488,8 +818,7 @@ public class Spinner {
 				throw new RuntimeException("Repartitioner called with "
 						+ REPARTITION + " set to 0");
 			}
-			aggregate(loadAggregatorNames[partition],
-					new LongWritable(vertex.getNumEdges()));
+			loads[partition] += loadModel.load(vertex);
 			vertex.getValue().setCurrentPartition(partition);
 			vertex.getValue().setNewPartition(partition);
 			PartitionMessage message = new PartitionMessage(vertex.getId()
@@ -505,10 +834,13 @@ public class Spinner {
 					REPARTITION, DEFAULT_REPARTITION);
 			migrationProbability = ((double) repartition)
 					/ (repartition + numberOfPartitions);
-			loadAggregatorNames = new String[numberOfPartitions + repartition];
-			for (int i = 0; i < numberOfPartitions + repartition; i++) {
-				loadAggregatorNames[i] = AGGREGATOR_LOAD_PREFIX + i;
-			}
+			loads = new long[numberOfPartitions + repartition];
+			loadModel = LoadModel.fromConf(getConf());
+		}
+
+		@Override
+		public void postSuperstep() {
+			aggregate(AGGREGATOR_LOADS, new LongWritableArray(loads));
 		}
 	}
 
@@ -525,6 +857,7 @@ public class Spinner {
 				Iterable<DegMessage> messages) throws IOException {
 			if(vertex.getNumEdges() == 1 || vertex.getNumEdges() == 0)
 				return;
+			long twoHopSize = 0;
 			for (DegMessage other : messages) {	//Here one degree vertices are pruned.
 				if(pruneOneDegrees && other.getValue() == 1){
 					vertex.getValue().addOneEdge(other.getPayloadVertex());
@@ -533,6 +866,8 @@ public class Spinner {
 					removeVertexRequest(new LongWritable(other.getPayloadVertex()));
 					continue;
 				}				
+				//THE DEGREE WAS SENT BEFORE THE SYMMETRIZATION BELOW, SO THIS ONLY APPROXIMATES THE FLOOD COST
+				twoHopSize += other.getValue();
 				EdgeValue edgeValue = vertex.getEdgeValue(new LongWritable(other.getPayloadVertex()));				
 				if (edgeValue == null) {
 					edgeValue = new EdgeValue();
@@ -546,6 +881,7 @@ public class Spinner {
 					vertex.setEdgeValue(new LongWritable(other.getPayloadVertex()), edgeValue);
 				}
 			}
+			vertex.getValue().setTwoHopSize(twoHopSize);
 		}
 
 		@Override
@@ -560,7 +896,6 @@ public class Spinner {
 
 	public static class PartitionerMasterCompute extends DefaultMasterCompute {
 		private LinkedList<Double> states;
-		private String[] loadAggregatorNames;
 		private int maxIterations;
 		private int numberOfPartitions;
 		private double convergenceThreshold;
@@ -573,6 +908,13 @@ public class Spinner {
 		private double score;
 		
 		public boolean findComponents;
+		public boolean renumberComponents;
+
+		//HILBERT INITIALIZATION VARIABLES
+		protected boolean hilbert;
+		protected boolean hilbertCellsCounted;
+		protected int hilbertOrder;
+		protected int hilbertRefinements;
 
 		//LURKER VARIABLES
 		protected boolean componentsFound;
@@ -592,22 +934,34 @@ public class Spinner {
 			windowSize = (int) getContext().getConfiguration().getInt(
 					WINDOW_SIZE, DEFAULT_WINDOW_SIZE);
 			states = Lists.newLinkedList();
-			// Create aggregators for each partition
-			loadAggregatorNames = new String[numberOfPartitions + repartition];
-			for (int i = 0; i < numberOfPartitions + repartition; i++) {
-				loadAggregatorNames[i] = AGGREGATOR_LOAD_PREFIX + i;
-				registerPersistentAggregator(loadAggregatorNames[i],
-						LongSumAggregator.class);
-				registerAggregator(AGGREGATOR_DEMAND_PREFIX + i,
-						LongSumAggregator.class);
-			}
+			// One element per partition
+			registerPersistentAggregator(AGGREGATOR_LOADS, LongArraySumAggregator.class);
+			registerAggregator(AGGREGATOR_DEMANDS, LongArraySumAggregator.class);
 			registerAggregator(AGGREGATOR_STATE, DoubleSumAggregator.class);
 			registerAggregator(AGGREGATOR_LOCALS, LongSumAggregator.class);
 			registerAggregator(AGGREGATOR_MIGRATIONS, LongSumAggregator.class);
 
 			registerAggregator(ConnectedComponentsComputation.activityAggr, BooleanAndAggregator.class);
 
+			hilbert = getConf().getBoolean(HILBERT, false);
+			hilbertOrder = getConf().getInt(HILBERT_ORDER, DEFAULT_HILBERT_ORDER);
+			hilbertRefinements = getConf().getInt(HILBERT_REFINEMENTS, DEFAULT_HILBERT_REFINEMENTS);
+			if (hilbert && (hilbertOrder < 1 || hilbertOrder > HilbertCurve.MAX_ORDER)) {
+				throw new IllegalArgumentException(HILBERT_ORDER + " must be in [1, "
+						+ HilbertCurve.MAX_ORDER + "], found " + hilbertOrder);
+			}
+			if (hilbert) {
+				registerPersistentAggregator(AGGREGATOR_MIN_X, FloatMinAggregator.class);
+				registerPersistentAggregator(AGGREGATOR_MIN_Y, FloatMinAggregator.class);
+				registerPersistentAggregator(AGGREGATOR_MAX_X, FloatMaxAggregator.class);
+				registerPersistentAggregator(AGGREGATOR_MAX_Y, FloatMaxAggregator.class);
+				registerAggregator(AGGREGATOR_HILBERT_CELLS, LongArraySumAggregator.class);
+			}
+
 			findComponents = getConf().getBoolean(Spinner.findComponentsString, true);
+			renumberComponents = getConf().getBoolean(Spinner.renumberComponentsString, true);
+			if(findComponents && renumberComponents)
+				registerAggregator(AGGREGATOR_COMPONENT_ROOTS, LongWritableSetAggregator.class);
 			
 			componentsFound = false;
 						
@@ -626,9 +980,9 @@ public class Spinner {
 							/ getTotalNumEdges() + " local edges");
 					long minLoad = Long.MAX_VALUE;
 					long maxLoad = -Long.MAX_VALUE;
+					long[] loads = aggregatedArray(getAggregatedValue(AGGREGATOR_LOADS), numberOfPartitions + repartition);
 					for (int i = 0; i < numberOfPartitions + repartition; i++) {
-						long load = ((LongWritable) getAggregatedValue(loadAggregatorNames[i]))
-								.get();
+						long load = loads[i];
 						if (load < minLoad) {
 							minLoad = load;
 						}
@@ -636,7 +990,7 @@ public class Spinner {
 							maxLoad = load;
 						}
 					}
-					double expectedLoad = ((double) getTotalNumEdges())
+					double expectedLoad = ((double) totalLoad(loads))
 							/ (numberOfPartitions + repartition);
 					System.out.println((((double) maxLoad) / minLoad)
 							+ " max-min unbalance");
@@ -695,9 +1049,9 @@ public class Spinner {
 
 			long minLoad = Long.MAX_VALUE;
 			long maxLoad = -Long.MAX_VALUE;
+			long[] loads = aggregatedArray(getAggregatedValue(AGGREGATOR_LOADS), numberOfPartitions + repartition);
 			for (int i = 0; i < numberOfPartitions + repartition; i++) {
-				long load = ((LongWritable) getAggregatedValue(loadAggregatorNames[i]))
-						.get();
+				long load = loads[i];
 				if (load < minLoad) {
 					minLoad = load;
 				}
@@ -706,7 +1060,7 @@ public class Spinner {
 				}
 			}
 			maxMinLoad = ((double) maxLoad) / minLoad;
-			double expectedLoad = ((double) getTotalNumEdges())
+			double expectedLoad = ((double) totalLoad(loads))
 					/ (numberOfPartitions + repartition);
 			maxNormLoad = ((double) maxLoad) / expectedLoad;
 			score = ((DoubleWritable) getAggregatedValue(AGGREGATOR_STATE))
@@ -724,6 +1078,11 @@ public class Spinner {
 
 			int correctedSuperstep = superstep - egira;
 
+			if (correctedSuperstep < 0) {
+				broadcastComponentIds();
+				return;
+			}
+
 			if (correctedSuperstep == 0) {
 				setComputation(ConverterPropagate.class);
 			} else if (correctedSuperstep == 1) {
@@ -731,6 +1090,20 @@ public class Spinner {
 			} else if (correctedSuperstep == 2) {
 				if (repartition != 0) {
 					setComputation(Repartitioner.class);
+				} else if (hilbert && !hilbertCellsCounted) {
+					if (HilbertCurve.spans(hilbertBounds())) {
+						setComputation(HilbertHistogram.class); //THE INITIALIZATION IS DELAYED BY ONE SUPERSTEP.
+						hilbertCellsCounted = true;
+						egira++;
+					} else { //NO COORDINATES, OR ALL ON THE SAME POINT: EVERY VERTEX WOULD LIE IN THE SAME CELL.
+						System.out.println("Degenerate bounding box for the Hilbert initialization, using the random one");
+						hilbert = false;
+						setComputation(Initializer.class);
+					}
+				} else if (hilbert) {
+					long[] cellLoads = aggregatedArray(getAggregatedValue(AGGREGATOR_HILBERT_CELLS), HilbertCurve.cells(hilbertOrder));
+					broadcast(HILBERT_CUTS_BROADCAST, new LongWritableArray(HilbertCurve.cuts(cellLoads, numberOfPartitions)));
+					setComputation(HilbertInitializer.class);
 				} else {
 					setComputation(Initializer.class);
 				}
@@ -752,12 +1125,25 @@ public class Spinner {
 			}
 			printStats(correctedSuperstep);
 			updateStats();
-			if (hasConverged || correctedSuperstep >= maxIterations) {
+			boolean refined = hilbert && repartition == 0 && correctedSuperstep >= 3 + 2 * hilbertRefinements;
+			if (hasConverged || refined || correctedSuperstep >= maxIterations) {
 				haltComputation();
 				setCounters();
 			}
 		}
 
+		/**
+		 * Returns the bounding box {minX, minY, maxX, maxY} aggregated during
+		 * the first superstep.
+		 */
+		private float[] hilbertBounds() {
+			return new float[]{
+					((FloatWritable) getAggregatedValue(AGGREGATOR_MIN_X)).get(),
+					((FloatWritable) getAggregatedValue(AGGREGATOR_MIN_Y)).get(),
+					((FloatWritable) getAggregatedValue(AGGREGATOR_MAX_X)).get(),
+					((FloatWritable) getAggregatedValue(AGGREGATOR_MAX_Y)).get()};
+		}
+
 		private void findComponentsMasterCompute(int superstep) {
 
 			boolean lastActivity = ((BooleanWritable)getAggregatedValue(ConnectedComponentsComputation.activityAggr)).get();
@@ -768,12 +1154,31 @@ public class Spinner {
 
 			if(lastActivity){
 				componentsFound = true;
-				egira = superstep+1;
+				if(renumberComponents){
+					setComputation(ComponentRootsCollector.class); //THE COMPONENTS ARE RENUMBERED BEFORE PARTITIONING.
+					egira = superstep+2;
+				}else
+					egira = superstep+1;
 //				setComputation(DummyMessageTypeConverter.class);
 			}
 
 		}
 
+		/**
+		 * Sorts the component roots collected in the previous superstep and broadcasts them, so that the components are
+		 * renumbered by their position.
+		 */
+		private void broadcastComponentIds() {
+			LongWritableSet roots = getAggregatedValue(AGGREGATOR_COMPONENT_ROOTS);
+			long[] componentIds = new long[roots.size()];
+			int i = 0;
+			for(LongWritable root : roots.get())
+				componentIds[i++] = root.get();
+			Arrays.sort(componentIds);
+			broadcast(COMPONENT_IDS_BROADCAST, new LongWritableArray(componentIds));
+			setComputation(ComponentRenumbering.class);
+		}
+
 	}
 
 }
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package unipg.gila.multi;
+
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.IntWritable;
+
+import unipg.gila.common.multi.LayerIndexedPartition;
+import unipg.gila.layout.LayoutWorkerContext;
+
+/**
+ * This worker context publishes, before each layer-local superstep, the current layer to the LayerIndexedPartitions of the worker, and
+ * resets it after the superstep so that the operations between supersteps see every layer. The layer is read from the aggregator
+ * set by the master in the same superstep it chose the computation, so the partitions visit the layer the computations work on.
+ * It extends the LayoutWorkerContext, which owns the worker stores of the layout.
+ *
+ * @author Alessio Arleo
+ *
+ */
+public class LayerIndexedWorkerContext extends LayoutWorkerContext {
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#preApplication()
+	 */
+	@Override
+	public void preApplication() throws InstantiationException, IllegalAccessException {
+		super.preApplication();
+		LayerIndexedPartition.setActiveLayer(LayerIndexedPartition.allLayers);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#postApplication()
+	 */
+	@Override
+	public void postApplication() {
+		super.postApplication();
+		LayerIndexedPartition.setActiveLayer(LayerIndexedPartition.allLayers);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#preSuperstep()
+	 */
+	@Override
+	public void preSuperstep() {
+		super.preSuperstep();
+		BooleanWritable layerLocal = getBroadcast(LayerIndexedPartition.layerLocalBroadcast);
+		IntWritable layer = getAggregatedValue(LayerIndexedPartition.currentLayerAggregator);
+		if(layerLocal == null || !layerLocal.get() || layer == null)
+			LayerIndexedPartition.setActiveLayer(LayerIndexedPartition.allLayers);
+		else
+			LayerIndexedPartition.setActiveLayer(layer.get());
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.worker.WorkerContext#postSuperstep()
+	 */
+	@Override
+	public void postSuperstep() {
+		super.postSuperstep();
+		LayerIndexedPartition.setActiveLayer(LayerIndexedPartition.allLayers);
+	}
+
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2016 Alessio Arleo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+/**
+ * 
+ */
+package unipg.gila.multi;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+
+import org.apache.giraph.master.MasterCompute;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentLongArraySumAggregator;
+import unipg.gila.common.datastructures.LongWritableArray;
+
+/**
+ * This class counts the messages sent by a computation without touching the Hadoop counters in the sending loop. Each computation
+ * instance, i.e. each compute thread, owns one and updates its primitive counters: the number of messages, an estimate of their
+ * bytes and a histogram of the fan-out of each send, with one bucket per power of two. At the end of the superstep the counters are
+ * aggregated once, keyed by the computation class; the master sums them up across supersteps and exports them as counters of the
+ * {@link MultiScaleComputation#MESSAGES_COUNTER_GROUP} group when the computation terminates.
+ * 
+ * The size of the messages is measured by serializing one of them every {@link #sizeSamplingPeriod} sends.
+ * 
+ * @author Alessio Arleo
+ *
+ */
+public class MessageMetrics {
+
+	public static final String messageMetricsAggregator = "AGG_MESSAGE_METRICS";
+
+	protected static final int fanOutBuckets = 16;
+	protected static final int sizeSamplingPeriod = 64;
+
+	protected static final int messagesSlot = 0;
+	protected static final int bytesSlot = 1;
+	protected static final int histogramSlot = 2;
+
+	private final Text key;
+	private final long[] values = new long[histogramSlot + fanOutBuckets];
+	private final DataOutputBuffer sizeBuffer = new DataOutputBuffer();
+	private int messageSize = -1;
+	private int sinceMeasure;
+
+	public MessageMetrics(Class<?> computation){
+		key = new Text(computation.getSimpleName());
+	}
+
+	/**
+	 * Registers the aggregator which collects the metrics of each superstep.
+	 */
+	public static void registerAggregator(MasterCompute master) throws InstantiationException, IllegalAccessException{
+		master.registerAggregator(messageMetricsAggregator, ComponentLongArraySumAggregator.class);
+	}
+
+	/**
+	 * Records a message sent to a single vertex.
+	 */
+	public void sent(Writable message){
+		sent(message, 1);
+	}
+
+	/**
+	 * Records a message sent to the given number of vertices.
+	 */
+	public void sent(Writable message, int fanOut){
+		if(fanOut <= 0)
+			return;
+		if(messageSize == -1 || ++sinceMeasure >= sizeSamplingPeriod){
+			messageSize = measure(message);
+			sinceMeasure = 0;
+		}
+		values[messagesSlot] += fanOut;
+		values[bytesSlot] += (long) fanOut*messageSize;
+		values[histogramSlot + Math.min(fanOutBuckets - 1, 31 - Integer.numberOfLeadingZeros(fanOut))]++;
+	}
+
+	private int measure(Writable message){
+		sizeBuffer.reset();
+		try {
+			message.write(sizeBuffer);
+		} catch (IOException e) {
+			return 0;
+		}
+		return sizeBuffer.getLength();
+	}
+
+	/**
+	 * Returns the metrics collected since the last call, to be aggregated, or null if no message was sent; the counters are reset.
+	 */
+	public MapWritable drain(){
+		if(values[messagesSlot] == 0)
+			return null;
+		MapWritable toAggregate = new MapWritable();
+		toAggregate.put(key, new LongWritableArray(values));
+		for(int i=0; i<values.length; i++)
+			values[i] = 0;
+		return toAggregate;
+	}
+
+	/**
+	 * The master side sums of the metrics, by computation class.
+	 */
+	public static class Totals {
+
+		private final MapWritable totals = new MapWritable();
+
+		/**
+		 * Adds the metrics aggregated during the last superstep.
+		 */
+		public void add(MapWritable aggregated){
+			for(Entry<Writable, Writable> current : aggregated.entrySet()){
+				long[] values = ((LongWritableArray)current.getValue()).get();
+				LongWritableArray total = (LongWritableArray) totals.get(current.getKey());
+				if(total == null){
+					totals.put(new Text((Text)current.getKey()), new LongWritableArray(values));
+					continue;
+				}
+				long[] sum = total.get();
+				for(int i=0; i<sum.length; i++)
+					sum[i] += values[i];
+			}
+		}
+
+		/**
+		 * Exports the sums as counters.
+		 */
+		public void export(TaskInputOutputContext<?, ?, ?, ?> context){
+			for(Entry<Writable, Writable> current : totals.entrySet()){
+				String name = current.getKey().toString();
+				long[] values = ((LongWritableArray)current.getValue()).get();
+				context.getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, name).increment(values[messagesSlot]);
+				context.getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, name + " bytes").increment(values[bytesSlot]);
+				for(int i=0; i<fanOutBuckets; i++)
+					if(values[histogramSlot + i] > 0)
+						context.getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, name + " fan-out " + bucketLabel(i)).increment(values[histogramSlot + i]);
+			}
+			totals.clear();
+		}
+
+		private static String bucketLabel(int bucket){
+			if(bucket == fanOutBuckets - 1)
+				return (1 << bucket) + "+";
+			if(bucket == 0)
+				return "1";
+			return (1 << bucket) + "-" + ((1 << (bucket + 1)) - 1);
+		}
+	}
+
+}
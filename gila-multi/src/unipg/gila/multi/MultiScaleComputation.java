@@ -31,15 +31,17 @@ import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.worker.WorkerContext;
 import org.apache.giraph.worker.WorkerGlobalCommUsage;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.io.Writable;
 import org.apache.log4j.Logger;
 
 import unipg.gila.common.datastructures.messagetypes.MessageWritable;
+import unipg.gila.common.multi.LayerLocalComputation;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 import unipg.gila.multi.coarseners.SolarMergerRoutine;
 
 public abstract class MultiScaleComputation<Z extends Writable, P extends MessageWritable, T extends MessageWritable> extends
-AbstractComputation<LayeredPartitionedLongWritable, Z, IntWritable, P, T> {
+AbstractComputation<LayeredPartitionedLongWritable, Z, IntWritable, P, T> implements LayerLocalComputation {
 
 	//LOGGER
 	public static final String multiscaleLogString = "multi.showLog";
@@ -50,6 +52,7 @@ AbstractComputation<LayeredPartitionedLongWritable, Z, IntWritable, P, T> {
 	
 	protected int currentLayer;
 	private boolean showLog;
+	protected MessageMetrics messageMetrics;
 	
 	@Override	
 	public void compute(
@@ -75,6 +78,18 @@ AbstractComputation<LayeredPartitionedLongWritable, Z, IntWritable, P, T> {
 				workerGlobalCommUsage, workerContext);
 		currentLayer = ((IntWritable)getAggregatedValue(SolarMergerRoutine.currentLayer)).get();
 		showLog = getConf().getBoolean(multiscaleLogString, false);
+		messageMetrics = new MessageMetrics(getClass());
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.giraph.graph.AbstractComputation#postSuperstep()
+	 */
+	@Override
+	public void postSuperstep() {
+		super.postSuperstep();
+		MapWritable metrics = messageMetrics.drain();
+		if(metrics != null)
+			aggregate(MessageMetrics.messageMetricsAggregator, metrics);
 	}
 
 	protected abstract void vertexInLayerComputation(Vertex<LayeredPartitionedLongWritable, Z, IntWritable> vertex,
@@ -92,7 +107,7 @@ AbstractComputation<LayeredPartitionedLongWritable, Z, IntWritable, P, T> {
 						LayeredPartitionedLongWritable id, T msg){
 		msg.addToWeight(((IntWritable)vertex.getEdgeValue(id)).get());
 		sendMessage(id, msg);
-    getContext().getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, this.getClass().getName()).increment(1);
+		messageMetrics.sent(msg);
 	}
 
 	/**
@@ -127,13 +142,15 @@ AbstractComputation<LayeredPartitionedLongWritable, Z, IntWritable, P, T> {
 			Vertex<LayeredPartitionedLongWritable, Z, IntWritable> vertex,
 			T message) {
 		Iterator<Edge<LayeredPartitionedLongWritable, IntWritable>> edges = vertex.getEdges().iterator();
+		int fanOut = 0;
 		while(edges.hasNext()){
 			LayeredPartitionedLongWritable current = edges.next().getTargetVertexId();
 			if(current.getLayer() == currentLayer){
 				sendMessage(current, message);
-		    getContext().getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, this.getClass().getName()).increment(1);
+				fanOut++;
 			}
 		}
+		messageMetrics.sent(message, fanOut);
 	}
 
 }
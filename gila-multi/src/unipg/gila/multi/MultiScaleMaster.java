@@ -25,8 +25,10 @@ import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.MapWritable;
 import org.apache.log4j.Logger;
 
+import unipg.gila.common.multi.LayerIndexedPartition;
 import unipg.gila.layout.GraphReintegrationRoutine;
 import unipg.gila.layout.LayoutRoutine;
+import unipg.gila.layout.PivotMDSRoutine;
 import unipg.gila.multi.coarseners.InterLayerCommunicationUtils.MergerToPlacerDummyComputation;
 import unipg.gila.multi.coarseners.SolarMergerRoutine;
 import unipg.gila.multi.layout.AdaptationStrategy;
@@ -36,6 +38,7 @@ import unipg.gila.multi.layout.MultiScaleLayout.MultiScaleDrawingScaler;
 import unipg.gila.multi.layout.MultiScaleLayout.MultiScaleGraphExplorer;
 import unipg.gila.multi.layout.MultiScaleLayout.MultiScaleGraphExplorerWithComponentsNo;
 import unipg.gila.multi.layout.MultiScaleLayout.MultiScaleLayoutCC;
+import unipg.gila.multi.layout.MultiScaleLayout.MultiScalePivotMDS;
 import unipg.gila.multi.placers.SolarPlacerRoutine;
 
 /**
@@ -55,9 +58,13 @@ public class MultiScaleMaster extends DefaultMasterCompute {
 	SolarMergerRoutine mergerRoutine;
 	SolarPlacerRoutine placerRoutine;
 	GraphReintegrationRoutine reintegrationRoutine;
+	PivotMDSRoutine pivotMDSRoutine;
 	AdaptationStrategy adaptationStrategy;
+	MessageMetrics.Totals messageTotals;
 
 	boolean merging;
+	boolean seeding;
+	boolean usePivotMDS;
 	boolean placing;
 	boolean layout;
 	boolean reintegrating;
@@ -75,6 +82,7 @@ public class MultiScaleMaster extends DefaultMasterCompute {
 				MultiScaleGraphExplorer.class, MultiScaleGraphExplorerWithComponentsNo.class,
 				MultiScaleDrawingScaler.class,
 				MultiScaleLayoutCC.class);
+		layoutRoutine.setFusedPropagator(MultiScaleLayout.FusedPropagator.class);
 
 		mergerRoutine = new SolarMergerRoutine();
 		mergerRoutine.initialize(this);
@@ -85,7 +93,12 @@ public class MultiScaleMaster extends DefaultMasterCompute {
 		reintegrationRoutine = new GraphReintegrationRoutine();
 		reintegrationRoutine.initialize(this);
 
+		pivotMDSRoutine = new PivotMDSRoutine();
+		pivotMDSRoutine.initialize(this, MultiScalePivotMDS.class);
+		usePivotMDS = getConf().getBoolean(PivotMDSRoutine.pivotMDSString, false);
+
 		merging=false;
+		seeding=false;
 		layout=false;
 		reintegrating=false;
 		preparePlacer = false;
@@ -102,15 +115,28 @@ public class MultiScaleMaster extends DefaultMasterCompute {
 
 		registerPersistentAggregator(LayoutRoutine.ttlMaxAggregator, IntMaxAggregator.class);
 
+		MessageMetrics.registerAggregator(this);
+		messageTotals = new MessageMetrics.Totals();
+
 	}
 
 	public void compute() {
+		selectComputation();
+		LayerIndexedPartition.broadcastLayerLocal(this);
+	}
+
+	/**
+	 * Runs the routine of the current phase, which sets the computation for the next superstep.
+	 */
+	protected void selectComputation() {
 		if(getSuperstep() == 0){
 			merging = true;
 		}
+		messageTotals.add((MapWritable) getAggregatedValue(MessageMetrics.messageMetricsAggregator));
 				
 		if(terminate){
 			getContext().getCounter(multiCounterString, "Supersteps").increment(getSuperstep());
+			messageTotals.export(getContext());
 			haltComputation();
 			return;
 		}
@@ -122,10 +148,22 @@ public class MultiScaleMaster extends DefaultMasterCompute {
 			}
 			else{
 				merging = false;
-				preparePlacer = true;
+				if(usePivotMDS)
+					seeding = true;
+				else
+					preparePlacer = true;
 				setComputation(MergerToPlacerDummyComputation.class);
 				return;
 			}
+		if(seeding)
+			if(!pivotMDSRoutine.compute())
+				return;
+			else{
+				//THE COARSEST LAYER STARTS FROM AN INFORMED PLACEMENT, SO IT CAN START COOLER.
+				seeding = false;
+				preparePlacer = true;
+				layoutRoutine.setInformedPlacement(getConf().getFloat(PivotMDSRoutine.tempFactorBoostString, PivotMDSRoutine.tempFactorBoostDefault));
+			}
 		int noOfVertices = ((IntWritable)((MapWritable)getAggregatedValue(SolarMergerRoutine.layerVertexSizeAggregator)).get(new IntWritable(currentLayer))).get();
 		int noOfLayers = ((IntWritable)getAggregatedValue(SolarMergerRoutine.layerNumberAggregator)).get();
 		int noOfEdges = (int) Math.ceil(((IntWritable)((MapWritable)getAggregatedValue(SolarMergerRoutine.layerEdgeSizeAggregator)).get(new IntWritable(currentLayer))).get()/2);
@@ -187,6 +225,7 @@ public class MultiScaleMaster extends DefaultMasterCompute {
 		if(reintegrating)
 			if(reintegrationRoutine.compute()){
 				terminate = true;
+				messageTotals.export(getContext());
 				haltComputation();
 			}
 	}
@@ -39,6 +39,7 @@ import unipg.gila.common.datastructures.messagetypes.SingleLayerLayoutMessage;
 import unipg.gila.common.datastructures.messagetypes.LayoutMessageMatrix;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 import unipg.gila.common.multi.SolarMessage;
+import unipg.gila.layout.LayoutWorkerContext;
 import unipg.gila.multi.MultiScaleComputation;
 import unipg.gila.partitioning.Spinner;
 
@@ -98,6 +99,7 @@ public class InterLayerCommunicationUtils{
 					sendMessage(lowerID, (LayoutMessage) it.next().propagateAndDie());
 				removeEdgesRequest(lowerID, vertex.getId());
 			}
+			LayoutWorkerContext.of(getWorkerContext()).releaseVertex(vertex.getId());
 			if(destroyLevels){
 				removeVertexRequest(vertex.getId());
 			}
@@ -22,9 +22,9 @@ import java.util.List;
 import java.util.Map.Entry;
 
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
-import org.apache.giraph.edge.ByteArrayEdges;
 import org.apache.giraph.edge.Edge;
 import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.OutEdges;
 import org.apache.giraph.graph.GraphState;
 import org.apache.giraph.graph.GraphTaskManager;
 import org.apache.giraph.graph.Vertex;
@@ -571,8 +571,8 @@ public class SolarMerger{
 
 			addEdgeRequest(vertex.getId(), EdgeFactory.create(homologousId, new IntWritable(1)));					
 
-			ByteArrayEdges<LayeredPartitionedLongWritable, IntWritable> outEdges = new ByteArrayEdges<LayeredPartitionedLongWritable, IntWritable>();
-			outEdges.setConf(getSpecialConf());
+			//THE EDGES ARE CREATED WITH THE CONFIGURED OutEdges CLASS, SO THAT THEY ARE SERIALIZED AND READ BACK CONSISTENTLY
+			OutEdges<LayeredPartitionedLongWritable, IntWritable> outEdges = getSpecialConf().createOutEdges();
 
 			List<Edge<LayeredPartitionedLongWritable, IntWritable>> edgeList = new LinkedList<Edge<LayeredPartitionedLongWritable, IntWritable>>();
 			edgeList.add(EdgeFactory.create(vertex.getId(), new IntWritable(1)));
@@ -34,6 +34,7 @@ import org.apache.log4j.Logger;
 
 import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentIntMaxAggregator;
 import unipg.gila.aggregators.ComponentAggregatorAbstract.ComponentIntSumAggregator;
+import unipg.gila.common.multi.LayerIndexedPartition;
 import unipg.gila.multi.coarseners.SolarMerger.AsteroidCaller;
 import unipg.gila.multi.coarseners.SolarMerger.DummySolarMergerComputation;
 import unipg.gila.multi.coarseners.SolarMerger.MoonSweep;
@@ -57,7 +58,7 @@ public class SolarMergerRoutine {
 	 * */
 	protected static Logger log = Logger.getLogger(SolarMergerRoutine.class);
 
-	public static final String currentLayer = "AGG_CURRENTLAYER";
+	public static final String currentLayer = LayerIndexedPartition.currentLayerAggregator;
 	public static final String layerVertexSizeAggregator = "AGG_VERTEX_SIZE";
 	public static final String layerEdgeSizeAggregator = "AGG_EDGE_SIZE";	
 	public static final String layerEdgeWeightsAggregator = "AGG_EDGE_WEIGHTS";	
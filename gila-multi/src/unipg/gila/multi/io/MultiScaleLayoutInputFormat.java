@@ -68,7 +68,7 @@ TextVertexInputFormat<LayeredPartitionedLongWritable, AstralBodyCoordinateWritab
 		@Override
 		protected LayeredPartitionedLongWritable getId(JSONArray jsonVertex) throws JSONException,
 		IOException {
-			return new LayeredPartitionedLongWritable(jsonVertex.getInt(2) + "_" + jsonVertex.getLong(0));
+			return new LayeredPartitionedLongWritable((short) jsonVertex.getInt(2), jsonVertex.getLong(0));
 		}
 
 		@Override
@@ -88,7 +88,7 @@ TextVertexInputFormat<LayeredPartitionedLongWritable, AstralBodyCoordinateWritab
 			int i;
 			for (i = 0; i < jsonEdgeArray.length(); ++i) {
 				JSONArray jsonEdge = jsonEdgeArray.getJSONArray(i);
-				edges.add(EdgeFactory.create(new LayeredPartitionedLongWritable(jsonEdge.getInt(1) + "_" + jsonEdge.getLong(0)),
+				edges.add(EdgeFactory.create(new LayeredPartitionedLongWritable((short) jsonEdge.getInt(1), jsonEdge.getLong(0)),
 						new IntWritable(1)));
 			}
 			return edges;
@@ -30,10 +30,13 @@ import org.apache.giraph.worker.WorkerContext;
 import org.apache.giraph.worker.WorkerGlobalCommUsage;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
 import org.apache.log4j.Logger;
 
 import unipg.gila.common.coordinatewritables.AstralBodyCoordinateWritable;
 import unipg.gila.common.datastructures.messagetypes.LayoutMessage;
+import unipg.gila.common.datastructures.messagetypes.PivotMessage;
+import unipg.gila.common.multi.LayerLocalComputation;
 import unipg.gila.common.multi.LayeredPartitionedLongWritable;
 import unipg.gila.layout.AbstractPropagator;
 import unipg.gila.layout.AbstractSeeder;
@@ -42,7 +45,8 @@ import unipg.gila.layout.LayoutRoutine.DrawingBoundariesExplorer;
 import unipg.gila.layout.LayoutRoutine.DrawingBoundariesExplorerWithComponentsNo;
 import unipg.gila.layout.LayoutRoutine.DrawingScaler;
 import unipg.gila.layout.LayoutRoutine.LayoutCCs;
-import unipg.gila.multi.MultiScaleComputation;
+import unipg.gila.layout.PivotMDSRoutine.PivotMDSComputation;
+import unipg.gila.multi.MessageMetrics;
 import unipg.gila.multi.coarseners.SolarMergerRoutine;
 
 /**
@@ -55,9 +59,11 @@ public class MultiScaleLayout {
 
 	protected static int currentLayer;	
 	
-	public static class Seeder extends AbstractSeeder<AstralBodyCoordinateWritable, IntWritable>{
+	public static class Seeder extends AbstractSeeder<AstralBodyCoordinateWritable, IntWritable> implements LayerLocalComputation{
 
 		private float k;
+		private MessageMetrics messageMetrics;
+		private int fanOut = -1;
 		
 		/* (non-Javadoc)
 		 * @see unipg.gila.layout.AbstractSeeder#initialize(org.apache.giraph.graph.GraphState, org.apache.giraph.comm.WorkerClientRequestProcessor, org.apache.giraph.graph.GraphTaskManager, org.apache.giraph.worker.WorkerGlobalCommUsage, org.apache.giraph.worker.WorkerContext)
@@ -73,6 +79,19 @@ public class MultiScaleLayout {
 					workerGlobalCommUsage, workerContext);
 			currentLayer = ((IntWritable)getAggregatedValue(SolarMergerRoutine.currentLayer)).get();
 			k = ((FloatWritable)getAggregatedValue(LayoutRoutine.k_agg)).get();
+			LayoutMessage.setImplicitLayer(currentLayer);
+			messageMetrics = new MessageMetrics(getClass());
+		}
+
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.AbstractSeeder#postSuperstep()
+		 */
+		@Override
+		public void postSuperstep() {
+			super.postSuperstep();
+			MapWritable metrics = messageMetrics.drain();
+			if(metrics != null)
+				aggregate(MessageMetrics.messageMetricsAggregator, metrics);
 		}
 
 		/* (non-Javadoc)
@@ -91,6 +110,14 @@ public class MultiScaleLayout {
 			}
 		}
 
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.AbstractSeeder#isFloodable(unipg.gila.common.multi.LayeredPartitionedLongWritable)
+		 */
+		@Override
+		protected boolean isFloodable(LayeredPartitionedLongWritable target) {
+			return target.getLayer() == currentLayer;
+		}
+
 		/* (non-Javadoc)
 		 * @see org.apache.giraph.graph.AbstractComputation#sendMessageToAllEdges(org.apache.giraph.graph.Vertex, org.apache.hadoop.io.Writable)
 		 */
@@ -99,6 +126,7 @@ public class MultiScaleLayout {
 				Vertex<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable> vertex,
 				LayoutMessage message) {
 			Iterator<Edge<LayeredPartitionedLongWritable, IntWritable>> edges = vertex.getEdges().iterator();
+			fanOut = 0;
 			while(edges.hasNext()){
 				LayeredPartitionedLongWritable current = edges.next().getTargetVertexId();
 				if(current.getLayer() != currentLayer)
@@ -106,17 +134,34 @@ public class MultiScaleLayout {
 				aggregate(LayoutRoutine.max_K_agg, new FloatWritable(((IntWritable)vertex.getEdgeValue(current)).get()*k));
 				LayoutMessage msgCopy = ((LayoutMessage)message).copy();
 				sendMessage(current, msgCopy);
-		    getContext().getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, this.getClass().getName()).increment(1);
 			}
+			messageMetrics.sent(message, fanOut);
+			fanOut = -1;
+		}
+
+		/**
+		 * Records the messages which survived the filters of the seeder; those sent by sendMessageToAllEdges are recorded as a single
+		 * send.
+		 * 
+		 * @see unipg.gila.layout.AbstractSeeder#messageSent(unipg.gila.common.datastructures.messagetypes.LayoutMessage, int)
+		 */
+		@Override
+		protected void messageSent(LayoutMessage message, int recipientsNo) {
+			if(fanOut >= 0)
+				fanOut += recipientsNo;
+			else
+				messageMetrics.sent(message, recipientsNo);
 		}
 
 
 	}
 
-	public static class Propagator extends AbstractPropagator<AstralBodyCoordinateWritable, IntWritable>{
+	public static class Propagator extends AbstractPropagator<AstralBodyCoordinateWritable, IntWritable> implements LayerLocalComputation{
 
 		float modifier;
 		float maxK = Float.MIN_VALUE;
+		private MessageMetrics messageMetrics;
+		private int fanOut = -1;
 		
 		/* (non-Javadoc)
 		 * @see unipg.gila.layout.AbstractPropagator#initialize(org.apache.giraph.graph.GraphState, org.apache.giraph.comm.WorkerClientRequestProcessor, org.apache.giraph.graph.GraphTaskManager, org.apache.giraph.worker.WorkerGlobalCommUsage, org.apache.giraph.worker.WorkerContext)
@@ -131,8 +176,21 @@ public class MultiScaleLayout {
 			super.initialize(graphState, workerClientRequestProcessor, graphTaskManager,
 					workerGlobalCommUsage, workerContext);
 			currentLayer = ((IntWritable)getAggregatedValue(SolarMergerRoutine.currentLayer)).get();
+			LayoutMessage.setImplicitLayer(currentLayer);
 			modifier = getConf().getFloat(LayoutRoutine.walshawModifierString, LayoutRoutine.walshawModifierDefault);
 			maxK = ((FloatWritable)getAggregatedValue(LayoutRoutine.max_K_agg)).get();
+			messageMetrics = new MessageMetrics(getClass());
+		}
+
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.AbstractPropagator#postSuperstep()
+		 */
+		@Override
+		public void postSuperstep() {
+			super.postSuperstep();
+			MapWritable metrics = messageMetrics.drain();
+			if(metrics != null)
+				aggregate(MessageMetrics.messageMetricsAggregator, metrics);
 		}
 
 		/* (non-Javadoc)
@@ -145,7 +203,8 @@ public class MultiScaleLayout {
 			if(vertex.getId().getLayer() != currentLayer)
 				return;
 			else{
-				if(new Float(vertex.getValue().getCoordinates()[0]).isNaN() || new Float(vertex.getValue().getCoordinates()[1]).isNaN())
+				vertex.getValue().getCoordinates(mycoords);
+				if(Float.isNaN(mycoords[0]) || Float.isNaN(mycoords[1]))
 					throw new IOException("NAN detected");
 				super.compute(vertex, messages);
 			}
@@ -181,18 +240,52 @@ public class MultiScaleLayout {
 				Vertex<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable> vertex,
 				LayoutMessage message) {
 			Iterator<Edge<LayeredPartitionedLongWritable, IntWritable>> edges = vertex.getEdges().iterator();
+			fanOut = 0;
 			while(edges.hasNext()){
 				LayeredPartitionedLongWritable current = edges.next().getTargetVertexId();
 				if(currentLayer != current.getLayer())
 					continue;
-				LayoutMessage msgCopy = ((LayoutMessage)message).copy();
-				sendMessage(current, msgCopy);
-		    getContext().getCounter(MultiScaleComputation.MESSAGES_COUNTER_GROUP, this.getClass().getName()).increment(1);
+				sendMessage(current, message); //Giraph serializes the message right away, so it can be shared among edges.
 			}
+			messageMetrics.sent(message, fanOut);
+			fanOut = -1;
+		}
+
+		/**
+		 * Records the messages which survived the deduplication and the local table filters; those sent by sendMessageToAllEdges
+		 * are recorded as a single send.
+		 * 
+		 * @see unipg.gila.layout.AbstractPropagator#messageSent(unipg.gila.common.datastructures.messagetypes.LayoutMessage, int)
+		 */
+		@Override
+		protected void messageSent(LayoutMessage message, int recipientsNo) {
+			if(fanOut >= 0)
+				fanOut += recipientsNo;
+			else
+				messageMetrics.sent(message, recipientsNo);
+		}
+	}
+
+	/**
+	 * The propagator which also seeds the vertices of the current layer in the supersteps flagged by the master, used when
+	 * "layout.fused" is set.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class FusedPropagator extends Propagator{
+
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.AbstractPropagator#createFusedSeeder()
+		 */
+		@Override
+		protected AbstractSeeder<AstralBodyCoordinateWritable, IntWritable> createFusedSeeder() {
+			return new Seeder();
 		}
 	}
 
 	public static class MultiScaleGraphExplorer extends DrawingBoundariesExplorer<AstralBodyCoordinateWritable, IntWritable>
+	implements LayerLocalComputation
 	{
 
 		/* (non-Javadoc)
@@ -225,6 +318,7 @@ public class MultiScaleLayout {
 	}
 
 	public static class MultiScaleGraphExplorerWithComponentsNo extends DrawingBoundariesExplorerWithComponentsNo<AstralBodyCoordinateWritable, IntWritable>
+	implements LayerLocalComputation
 	{
 
 		@Override
@@ -253,6 +347,7 @@ public class MultiScaleLayout {
 	}
 
 	public static class MultiScaleDrawingScaler extends DrawingScaler<AstralBodyCoordinateWritable, IntWritable>
+	implements LayerLocalComputation
 	{
 
 
@@ -285,6 +380,7 @@ public class MultiScaleLayout {
 	}
 
 	public static class MultiScaleLayoutCC extends LayoutCCs<AstralBodyCoordinateWritable, IntWritable>
+	implements LayerLocalComputation
 	{
 		
 		/* (non-Javadoc)
@@ -315,4 +411,59 @@ public class MultiScaleLayout {
 		}
 	}
 
+	/**
+	 * The pivot-MDS initial placement of the current layer; the visits only follow the edges within the layer and use the edge
+	 * weights as lengths.
+	 * 
+	 * @author Alessio Arleo
+	 *
+	 */
+	public static class MultiScalePivotMDS extends PivotMDSComputation<AstralBodyCoordinateWritable, IntWritable>
+	implements LayerLocalComputation
+	{
+		
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.PivotMDSRoutine.PivotMDSComputation#compute(org.apache.giraph.graph.Vertex, java.lang.Iterable)
+		 */
+		@Override
+		public void compute(
+				Vertex<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable> vertex,
+				Iterable<PivotMessage> messages) throws IOException {
+			if(vertex.getId().getLayer() != currentLayer)
+				return;
+			super.compute(vertex, messages);
+		}
+		
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.PivotMDSRoutine.PivotMDSComputation#isVisitable(org.apache.giraph.edge.Edge)
+		 */
+		@Override
+		protected boolean isVisitable(Edge<LayeredPartitionedLongWritable, IntWritable> edge) {
+			return edge.getTargetVertexId().getLayer() == currentLayer;
+		}
+		
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.PivotMDSRoutine.PivotMDSComputation#edgeLength(org.apache.giraph.edge.Edge)
+		 */
+		@Override
+		protected int edgeLength(Edge<LayeredPartitionedLongWritable, IntWritable> edge) {
+			return Math.max(1, edge.getValue().get());
+		}
+		
+		/* (non-Javadoc)
+		 * @see unipg.gila.layout.PivotMDSRoutine.PivotMDSComputation#initialize(org.apache.giraph.graph.GraphState, org.apache.giraph.comm.WorkerClientRequestProcessor, org.apache.giraph.graph.GraphTaskManager, org.apache.giraph.worker.WorkerGlobalCommUsage, org.apache.giraph.worker.WorkerContext)
+		 */
+		@Override
+		public void initialize(
+				GraphState graphState,
+				WorkerClientRequestProcessor<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable> workerClientRequestProcessor,
+				GraphTaskManager<LayeredPartitionedLongWritable, AstralBodyCoordinateWritable, IntWritable> graphTaskManager,
+				WorkerGlobalCommUsage workerGlobalCommUsage,
+				WorkerContext workerContext) {
+			super.initialize(graphState, workerClientRequestProcessor, graphTaskManager,
+					workerGlobalCommUsage, workerContext);
+			currentLayer = ((IntWritable)getAggregatedValue(SolarMergerRoutine.currentLayer)).get();
+		}
+	}
+
 }